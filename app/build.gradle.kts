@@ -40,6 +40,14 @@ android {
     buildFeatures {
         compose = true
     }
+    testOptions {
+        // android.util.Log is a no-op in unit tests instead of throwing
+        unitTests.isReturnDefaultValues = true
+        // Timing benchmarks are skipped unless requested with -Pbenchmarks
+        unitTests.all {
+            it.systemProperty("thesisapp.benchmarks", project.hasProperty("benchmarks").toString())
+        }
+    }
 
     packaging {
         resources {
@@ -64,6 +72,8 @@ dependencies {
     implementation(libs.androidx.ui.tooling.preview)
     implementation(libs.androidx.material3)
     testImplementation(libs.junit)
+    testImplementation(libs.mockk)
+    testImplementation(libs.kotlinx.coroutines.test)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
     androidTestImplementation(platform(libs.androidx.compose.bom))
@@ -93,6 +103,10 @@ dependencies {
     kapt(libs.hilt.android.compiler)
     implementation(libs.androidx.hilt.navigation.compose)
 
+    implementation(libs.androidx.room.runtime)
+    implementation(libs.androidx.room.ktx)
+    kapt(libs.androidx.room.compiler)
+
     testImplementation(libs.appium.java.client)
     testImplementation(libs.selenium.java)
     testImplementation(libs.testng)
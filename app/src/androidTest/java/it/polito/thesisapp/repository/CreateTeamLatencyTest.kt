@@ -0,0 +1,124 @@
+package it.polito.thesisapp.repository
+
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.google.firebase.firestore.DocumentReference
+import com.google.firebase.firestore.FieldValue
+import com.google.firebase.firestore.FirebaseFirestore
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.tasks.await
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.BeforeClass
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Compares the latency of the sequential team creation used before batching with
+ * [TeamRepository.createTeam], against the Firestore emulator.
+ *
+ * Requires the emulator to be running on the development machine:
+ * `firebase emulators:start --only firestore`.
+ */
+@RunWith(AndroidJUnit4::class)
+class CreateTeamLatencyTest {
+
+    private val db = FirebaseFirestore.getInstance()
+    private val repository = TeamRepository()
+
+    /**
+     * Creates the profiles used as team members.
+     *
+     * @param count Number of members besides the current user
+     * @return IDs of the members, including the current user
+     */
+    private suspend fun seedProfiles(count: Int): Set<String> {
+        val ids = (1..count).map { "latency-profile-$it" } + Constants.User.USER_ID
+        val batch = db.batch()
+        ids.forEach { id ->
+            batch.set(
+                db.collection(Constants.FirestoreCollections.PROFILES).document(id),
+                mapOf(Constants.FirestoreFields.Profile.TEAMS to emptyList<DocumentReference>())
+            )
+        }
+        batch.commit().await()
+        return ids.toSet()
+    }
+
+    /**
+     * Sequential team creation, as performed before it was batched: one awaited write per document.
+     */
+    private suspend fun createTeamSequentially(teamName: String, memberIds: Set<String>) {
+        val profiles = db.collection(Constants.FirestoreCollections.PROFILES)
+        val teamRef = db.collection(Constants.FirestoreCollections.TEAMS)
+            .add(mapOf(Constants.FirestoreFields.Team.NAME to teamName))
+            .await()
+
+        teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS).add(
+            mapOf(
+                Constants.FirestoreFields.TeamMember.ROLE to Constants.FirestoreValues.TeamMemberRole.ADMIN,
+                Constants.FirestoreFields.TeamMember.PROFILE_REF to profiles.document(Constants.User.USER_ID)
+            )
+        ).await()
+
+        memberIds.filter { it != Constants.User.USER_ID }.forEach { memberId ->
+            teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS).add(
+                mapOf(
+                    Constants.FirestoreFields.TeamMember.ROLE to Constants.FirestoreValues.TeamMemberRole.MEMBER,
+                    Constants.FirestoreFields.TeamMember.PROFILE_REF to profiles.document(memberId)
+                )
+            ).await()
+        }
+
+        memberIds.forEach { memberId ->
+            profiles.document(memberId)
+                .update(Constants.FirestoreFields.Profile.TEAMS, FieldValue.arrayUnion(teamRef))
+                .await()
+        }
+    }
+
+    /**
+     * Measures the time taken by a suspending block.
+     */
+    private suspend fun measureMillis(block: suspend () -> Unit): Long {
+        val start = System.nanoTime()
+        block()
+        return (System.nanoTime() - start) / 1_000_000
+    }
+
+    @Test
+    fun batchedCreation_isFasterThanSequentialCreation() = runBlocking {
+        listOf(1, 10, 100).forEach { count ->
+            val memberIds = seedProfiles(count)
+
+            val sequentialMillis = measureMillis { createTeamSequentially("Sequential $count", memberIds) }
+            var teamRef: DocumentReference? = null
+            val batchedMillis = measureMillis {
+                teamRef = repository.createTeam("Batched $count", "", memberIds)
+            }
+
+            Log.i(TAG, "$count members: sequential $sequentialMillis ms, batched $batchedMillis ms")
+
+            val members = teamRef!!.collection(Constants.FirestoreCollections.TEAM_MEMBERS).get().await()
+            assertEquals(memberIds.size, members.size())
+            if (count >= 10) {
+                assertTrue(batchedMillis < sequentialMillis)
+            }
+        }
+    }
+
+    companion object {
+        private const val TAG = "CreateTeamLatencyTest"
+
+        /**
+         * Points the default Firestore instance to the emulator before it is used.
+         */
+        @BeforeClass
+        @JvmStatic
+        fun useEmulator() {
+            FirebaseFirestore.getInstance()
+                .useEmulator(Constants.Emulator.HOST, Constants.Emulator.FIRESTORE_PORT)
+        }
+    }
+}
@@ -22,8 +22,7 @@ import io.mockk.verify
 import it.polito.thesisapp.model.Profile
 import it.polito.thesisapp.model.Task
 import it.polito.thesisapp.model.TaskStatus
-import it.polito.thesisapp.model.Team
-import it.polito.thesisapp.model.TeamMember
+import it.polito.thesisapp.model.TeamSummary
 import it.polito.thesisapp.navigation.NavigationManager
 import it.polito.thesisapp.navigation.NavigationManager.NavigationEvent
 import it.polito.thesisapp.ui.LocalNavigationManager
@@ -82,19 +81,17 @@ class HomeScreenTest {
     )
 
     private val testTeams = listOf(
-        Team(
+        TeamSummary(
             id = "team1",
             name = "Team Alpha",
             description = "First test team",
-            members = listOf(TeamMember("ADMIN", mockk())),
-            tasks = emptyList()
+            memberCount = 1
         ),
-        Team(
+        TeamSummary(
             id = "team2",
             name = "Team Beta",
             description = "Second test team",
-            members = listOf(TeamMember("MEMBER", mockk()), TeamMember("MEMBER", mockk())),
-            tasks = emptyList()
+            memberCount = 2
         )
     )
 
@@ -146,6 +143,8 @@ class HomeScreenTest {
         every { mockViewModel.sortedTasks } returns MutableStateFlow(testTasks)
         every { mockViewModel.taskSortMode } returns MutableStateFlow(HomeViewModel.TaskSortMode.DATE_DESC)
         every { mockViewModel.selectedTeamIndex } returns MutableStateFlow(0)
+        every { mockViewModel.searchQuery } returns MutableStateFlow("")
+        every { mockViewModel.searchResults } returns MutableStateFlow(emptyList())
     }
 
     /**
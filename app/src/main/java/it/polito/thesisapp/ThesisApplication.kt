@@ -1,7 +1,11 @@
 package it.polito.thesisapp
 
 import android.app.Application
+import com.google.firebase.Firebase
 import com.google.firebase.FirebaseApp
+import com.google.firebase.firestore.firestore
+import com.google.firebase.firestore.firestoreSettings
+import com.google.firebase.firestore.persistentCacheSettings
 import dagger.hilt.android.HiltAndroidApp
 
 /**
@@ -10,12 +14,35 @@ import dagger.hilt.android.HiltAndroidApp
  */
 @HiltAndroidApp
 class ThesisApplication : Application() {
+
     /**
      * Called when the application is starting, before any other application objects have been created.
-     * Initializes Firebase for the application.
+     * Initializes Firebase for the application and configures the Firestore local cache.
      */
     override fun onCreate() {
         super.onCreate()
         FirebaseApp.initializeApp(this)
+        configureFirestoreCache()
+    }
+
+    /**
+     * Enables the persistent Firestore cache with an explicit size.
+     * Only the size is set: the persistent cache has no other garbage collection setting, and
+     * the SDK's default for it is to remove the least recently used documents that are not
+     * needed by active listeners once the cache grows past that size. Snapshot listeners
+     * deliver the cached data first, so screens render from the cache on cold start.
+     * Must run before Firestore is used for anything else.
+     */
+    private fun configureFirestoreCache() {
+        Firebase.firestore.firestoreSettings = firestoreSettings {
+            setLocalCacheSettings(persistentCacheSettings {
+                setSizeBytes(FIRESTORE_CACHE_SIZE_BYTES)
+            })
+        }
+    }
+
+    companion object {
+        // Size of the Firestore persistent cache beyond which the SDK's default LRU garbage collection runs
+        private const val FIRESTORE_CACHE_SIZE_BYTES = 100L * 1024 * 1024
     }
-}
\ No newline at end of file
+}
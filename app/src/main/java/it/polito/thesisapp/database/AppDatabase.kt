@@ -0,0 +1,46 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Database
+import androidx.room.RoomDatabase
+import androidx.room.TypeConverters
+
+/**
+ * Room database mirroring the profiles, teams and tasks read from Firestore.
+ * Firestore remains the source of the data, the mirror is what the UI observes.
+ * The task mutations not written to Firestore yet are kept in [MutationQueueDatabase],
+ * as the mirror is recreated on schema changes.
+ */
+@Database(
+    entities = [
+        ProfileEntity::class,
+        TeamEntity::class,
+        TaskEntity::class
+    ],
+    version = 6,
+    exportSchema = false
+)
+@TypeConverters(Converters::class)
+abstract class AppDatabase : RoomDatabase() {
+
+    /**
+     * @return DAO of the mirrored profiles
+     */
+    abstract fun profileDao(): ProfileDao
+
+    /**
+     * @return DAO of the mirrored teams
+     */
+    abstract fun teamDao(): TeamDao
+
+    /**
+     * @return DAO of the mirrored tasks
+     */
+    abstract fun taskDao(): TaskDao
+
+    companion object {
+        const val NAME = "thesisapp.db"
+
+        // Last version holding the queue of pending task mutations, moved to MutationQueueDatabase
+        const val LAST_VERSION_WITH_MUTATIONS = 5
+    }
+}
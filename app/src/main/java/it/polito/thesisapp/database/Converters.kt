@@ -0,0 +1,62 @@
+package it.polito.thesisapp.database
+
+import androidx.room.TypeConverter
+import it.polito.thesisapp.model.TaskStatus
+
+/**
+ * Room type converters for the columns of the local mirror.
+ */
+class Converters {
+
+    /**
+     * Joins a list of document paths into a single column value.
+     * Document paths never contain line breaks, so they are used as separator.
+     *
+     * @param paths The document paths
+     * @return The column value
+     */
+    @TypeConverter
+    fun fromPathList(paths: List<String>): String = paths.joinToString(PATH_SEPARATOR)
+
+    /**
+     * Splits a column value back into a list of document paths.
+     *
+     * @param value The column value
+     * @return The document paths
+     */
+    @TypeConverter
+    fun toPathList(value: String): List<String> =
+        if (value.isEmpty()) emptyList() else value.split(PATH_SEPARATOR)
+
+    /**
+     * Encodes task counts by status into a single column value, e.g. "TODO=3,DONE=1".
+     *
+     * @param counts The task counts
+     * @return The column value
+     */
+    @TypeConverter
+    fun fromTaskCounts(counts: Map<TaskStatus, Long>): String =
+        counts.entries.joinToString(ENTRY_SEPARATOR) { (status, count) -> "${status.name}=$count" }
+
+    /**
+     * Decodes a column value back into task counts by status.
+     *
+     * @param value The column value
+     * @return The task counts
+     */
+    @TypeConverter
+    fun toTaskCounts(value: String): Map<TaskStatus, Long> =
+        if (value.isEmpty()) {
+            emptyMap()
+        } else {
+            value.split(ENTRY_SEPARATOR).associate { entry ->
+                val (status, count) = entry.split("=")
+                TaskStatus.fromString(status) to count.toLong()
+            }
+        }
+
+    companion object {
+        private const val PATH_SEPARATOR = "\n"
+        private const val ENTRY_SEPARATOR = ","
+    }
+}
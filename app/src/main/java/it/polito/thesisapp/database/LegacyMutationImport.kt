@@ -0,0 +1,73 @@
+package it.polito.thesisapp.database
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.util.Log
+
+/**
+ * Moves the pending task mutations left in the mirror database by the versions that kept
+ * them there into [MutationQueueDatabase], before the mirror is recreated without them.
+ *
+ * Rows already in the queue are newer than the legacy ones and are kept, so running the
+ * import again after an interruption is harmless.
+ *
+ * @property context Context used to locate the mirror database
+ */
+class LegacyMutationImport(
+    private val context: Context
+) {
+
+    /**
+     * Copies the legacy pending mutations, if any, into the queue database.
+     * Must run before [AppDatabase] is opened.
+     *
+     * @param queueDatabase Database the mutations are copied into
+     */
+    fun run(queueDatabase: MutationQueueDatabase) {
+        val legacyFile = context.getDatabasePath(AppDatabase.NAME)
+        if (!legacyFile.exists()) {
+            return
+        }
+        try {
+            SQLiteDatabase.openDatabase(legacyFile.path, null, SQLiteDatabase.OPEN_READONLY).use { legacy ->
+                if (legacy.version > AppDatabase.LAST_VERSION_WITH_MUTATIONS || !legacy.hasMutationsTable()) {
+                    return
+                }
+                val queue = queueDatabase.openHelper.writableDatabase
+                legacy.rawQuery(
+                    "SELECT teamId, taskId, field, value, sequence FROM pending_task_mutations",
+                    null
+                ).use { cursor ->
+                    while (cursor.moveToNext()) {
+                        queue.execSQL(
+                            "INSERT OR IGNORE INTO pending_task_mutations " +
+                                "(teamId, taskId, field, value, sequence) VALUES (?, ?, ?, ?, ?)",
+                            arrayOf<Any>(
+                                cursor.getString(0),
+                                cursor.getString(1),
+                                cursor.getString(2),
+                                cursor.getString(3),
+                                cursor.getLong(4)
+                            )
+                        )
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to import the legacy pending mutations", e)
+        }
+    }
+
+    /**
+     * Whether the legacy database holds the pending mutations table.
+     */
+    private fun SQLiteDatabase.hasMutationsTable(): Boolean =
+        rawQuery(
+            "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'pending_task_mutations'",
+            null
+        ).use { it.moveToFirst() }
+
+    companion object {
+        private const val TAG = "LegacyMutationImport"
+    }
+}
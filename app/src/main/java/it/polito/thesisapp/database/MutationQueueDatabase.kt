@@ -0,0 +1,28 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Database
+import androidx.room.RoomDatabase
+
+/**
+ * Room database holding the task mutations that have not been written to Firestore yet.
+ *
+ * Unlike the mirror in [AppDatabase], its content cannot be rebuilt from Firestore, so it is
+ * kept apart and never recreated on schema changes: every version bump must come with a
+ * migration.
+ */
+@Database(
+    entities = [PendingMutationEntity::class],
+    version = 1,
+    exportSchema = false
+)
+abstract class MutationQueueDatabase : RoomDatabase() {
+
+    /**
+     * @return DAO of the queue of pending task mutations
+     */
+    abstract fun pendingMutationDao(): PendingMutationDao
+
+    companion object {
+        const val NAME = "thesisapp-mutations.db"
+    }
+}
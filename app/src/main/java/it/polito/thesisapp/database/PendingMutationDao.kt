@@ -0,0 +1,71 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Upsert
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Data access object for the queue of pending task mutations.
+ */
+@Dao
+interface PendingMutationDao {
+
+    /**
+     * Returns all the pending mutations, oldest first.
+     *
+     * @return The pending mutations
+     */
+    @Query("SELECT * FROM pending_task_mutations ORDER BY sequence")
+    suspend fun getAll(): List<PendingMutationEntity>
+
+    /**
+     * Observes the number of pending mutations.
+     *
+     * @return Flow emitting the queue depth
+     */
+    @Query("SELECT COUNT(*) FROM pending_task_mutations")
+    fun observeCount(): Flow<Int>
+
+    /**
+     * Returns the pending mutations of a field of the tasks of a team.
+     *
+     * @param teamId ID of the team
+     * @param field Name of the updated field
+     * @return The pending mutations
+     */
+    @Query("SELECT * FROM pending_task_mutations WHERE teamId = :teamId AND field = :field")
+    suspend fun getTeamMutations(teamId: String, field: String): List<PendingMutationEntity>
+
+    /**
+     * Observes the pending mutations of a field of the tasks of a team.
+     *
+     * @param teamId ID of the team
+     * @param field Name of the updated field
+     * @return Flow emitting the pending mutations
+     */
+    @Query("SELECT * FROM pending_task_mutations WHERE teamId = :teamId AND field = :field")
+    fun observeTeamMutations(teamId: String, field: String): Flow<List<PendingMutationEntity>>
+
+    /**
+     * Inserts a mutation, replacing the pending one of the same task field.
+     *
+     * @param mutation The mutation to store
+     */
+    @Upsert
+    suspend fun upsert(mutation: PendingMutationEntity)
+
+    /**
+     * Deletes a mutation, unless it has been replaced by a later one in the meantime.
+     *
+     * @param teamId ID of the team
+     * @param taskId ID of the task
+     * @param field Name of the updated field
+     * @param sequence Sequence of the mutation that was written
+     */
+    @Query(
+        "DELETE FROM pending_task_mutations " +
+            "WHERE teamId = :teamId AND taskId = :taskId AND field = :field AND sequence = :sequence"
+    )
+    suspend fun delete(teamId: String, taskId: String, field: String, sequence: Long)
+}
@@ -0,0 +1,25 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Entity
+
+/**
+ * A task field update waiting to be written to Firestore.
+ * There is at most one row per task field, so later updates replace earlier ones.
+ *
+ * @property teamId ID of the team
+ * @property taskId ID of the task
+ * @property field Name of the updated field
+ * @property value New value of the field
+ * @property sequence Increasing number identifying the latest update of the field
+ */
+@Entity(
+    tableName = "pending_task_mutations",
+    primaryKeys = ["teamId", "taskId", "field"]
+)
+data class PendingMutationEntity(
+    val teamId: String,
+    val taskId: String,
+    val field: String,
+    val value: String,
+    val sequence: Long
+)
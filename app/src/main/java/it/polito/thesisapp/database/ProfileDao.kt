@@ -0,0 +1,38 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Upsert
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Data access object for the mirrored profiles.
+ */
+@Dao
+interface ProfileDao {
+
+    /**
+     * Observes a profile.
+     *
+     * @param id ID of the profile
+     * @return Flow emitting the profile, or null if it is not mirrored
+     */
+    @Query("SELECT * FROM profiles WHERE id = :id")
+    fun observeProfile(id: String): Flow<ProfileEntity?>
+
+    /**
+     * Inserts or replaces a profile.
+     *
+     * @param profile The profile to store
+     */
+    @Upsert
+    suspend fun upsert(profile: ProfileEntity)
+
+    /**
+     * Deletes a profile.
+     *
+     * @param id ID of the profile
+     */
+    @Query("DELETE FROM profiles WHERE id = :id")
+    suspend fun delete(id: String)
+}
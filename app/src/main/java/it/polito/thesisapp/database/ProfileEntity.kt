@@ -0,0 +1,57 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+import com.google.firebase.Timestamp
+import com.google.firebase.firestore.FirebaseFirestore
+import it.polito.thesisapp.model.Profile
+import java.util.Date
+
+/**
+ * Local mirror of a profile document.
+ *
+ * @property id ID of the profile document
+ * @property firstName User's first name
+ * @property lastName User's last name
+ * @property birthDate User's date of birth in milliseconds since the epoch
+ * @property teamPaths Paths of the team documents the user belongs to
+ */
+@Entity(tableName = "profiles")
+data class ProfileEntity(
+    @PrimaryKey val id: String,
+    val firstName: String,
+    val lastName: String,
+    val birthDate: Long,
+    val teamPaths: List<String>
+) {
+    /**
+     * Converts the entity to the model used by the UI.
+     *
+     * @param db Firestore instance used to rebuild the team references
+     * @return The profile
+     */
+    fun toModel(db: FirebaseFirestore): Profile = Profile(
+        id = id,
+        firstName = firstName,
+        lastName = lastName,
+        birthDate = Timestamp(Date(birthDate)),
+        teams = teamPaths.map { db.document(it) }
+    )
+
+    companion object {
+        /**
+         * Creates the entity mirroring a profile.
+         *
+         * @param id ID of the profile document
+         * @param profile The profile read from Firestore
+         * @return The entity
+         */
+        fun fromModel(id: String, profile: Profile): ProfileEntity = ProfileEntity(
+            id = id,
+            firstName = profile.firstName,
+            lastName = profile.lastName,
+            birthDate = profile.birthDate.toDate().time,
+            teamPaths = profile.teams.map { it.path }
+        )
+    }
+}
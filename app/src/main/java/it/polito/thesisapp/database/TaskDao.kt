@@ -0,0 +1,142 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Transaction
+import androidx.room.Upsert
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Data access object for the mirrored tasks.
+ * Sorting and status filtering run in SQLite on the indexes of [TaskEntity].
+ */
+@Dao
+interface TaskDao {
+
+    /**
+     * Observes a task.
+     *
+     * @param teamId ID of the team
+     * @param id ID of the task
+     * @return Flow emitting the task, or null if it is not mirrored
+     */
+    @Query("SELECT * FROM tasks WHERE teamId = :teamId AND id = :id")
+    fun observeTask(teamId: String, id: String): Flow<TaskEntity?>
+
+    /**
+     * Observes the tasks of a team with the given statuses, newest first.
+     *
+     * @param teamId ID of the team
+     * @param statuses Names of the statuses to include
+     * @return Flow emitting the sorted tasks
+     */
+    @Query(
+        "SELECT * FROM tasks WHERE teamId = :teamId AND status IN (:statuses) " +
+            "ORDER BY creationDateSeconds DESC, creationDateNanos DESC"
+    )
+    fun observeTasksByDateDesc(teamId: String, statuses: List<String>): Flow<List<TaskEntity>>
+
+    /**
+     * Observes the tasks of a team with the given statuses, sorted by name in ascending order.
+     *
+     * @param teamId ID of the team
+     * @param statuses Names of the statuses to include
+     * @return Flow emitting the sorted tasks
+     */
+    @Query("SELECT * FROM tasks WHERE teamId = :teamId AND status IN (:statuses) ORDER BY name ASC")
+    fun observeTasksByNameAsc(teamId: String, statuses: List<String>): Flow<List<TaskEntity>>
+
+    /**
+     * Observes the tasks of a team with the given statuses, sorted by name in descending order.
+     *
+     * @param teamId ID of the team
+     * @param statuses Names of the statuses to include
+     * @return Flow emitting the sorted tasks
+     */
+    @Query("SELECT * FROM tasks WHERE teamId = :teamId AND status IN (:statuses) ORDER BY name DESC")
+    fun observeTasksByNameDesc(teamId: String, statuses: List<String>): Flow<List<TaskEntity>>
+
+    /**
+     * Inserts or replaces a task.
+     *
+     * @param task The task to store
+     */
+    @Upsert
+    suspend fun upsert(task: TaskEntity)
+
+    /**
+     * Inserts or replaces a set of tasks.
+     *
+     * @param tasks The tasks to store
+     */
+    @Upsert
+    suspend fun upsertAll(tasks: List<TaskEntity>)
+
+    /**
+     * Updates the status of a mirrored task, e.g. to show a status change not written yet.
+     *
+     * @param teamId ID of the team
+     * @param id ID of the task
+     * @param status Name of the new status
+     */
+    @Query("UPDATE tasks SET status = :status WHERE teamId = :teamId AND id = :id")
+    suspend fun updateStatus(teamId: String, id: String, status: String)
+
+    /**
+     * Deletes a task.
+     *
+     * @param teamId ID of the team
+     * @param id ID of the task
+     */
+    @Query("DELETE FROM tasks WHERE teamId = :teamId AND id = :id")
+    suspend fun delete(teamId: String, id: String)
+
+    /**
+     * Returns all the mirrored tasks of a team.
+     *
+     * @param teamId ID of the team
+     * @return The tasks, in no particular order
+     */
+    @Query("SELECT * FROM tasks WHERE teamId = :teamId")
+    suspend fun getTeamTasks(teamId: String): List<TaskEntity>
+
+    /**
+     * Deletes a set of tasks of a team.
+     * At most [MAX_DELETED_IDS] IDs can be bound at once, see [applyTeamTaskChanges].
+     *
+     * @param teamId ID of the team
+     * @param ids IDs of the tasks to delete
+     */
+    @Query("DELETE FROM tasks WHERE teamId = :teamId AND id IN (:ids)")
+    suspend fun deleteTasks(teamId: String, ids: List<String>)
+
+    /**
+     * Deletes all the tasks of a team.
+     *
+     * @param teamId ID of the team
+     */
+    @Query("DELETE FROM tasks WHERE teamId = :teamId")
+    suspend fun deleteTeamTasks(teamId: String)
+
+    /**
+     * Applies the changes of the tasks of a team: only the changed rows are written.
+     * Deleted IDs are bound in chunks, so that large deletions stay below the SQLite limit
+     * on the number of bound variables.
+     *
+     * @param teamId ID of the team
+     * @param upserted Tasks that were added or modified
+     * @param removedIds IDs of the tasks that were deleted
+     */
+    @Transaction
+    suspend fun applyTeamTaskChanges(teamId: String, upserted: List<TaskEntity>, removedIds: Collection<String>) {
+        if (upserted.isNotEmpty()) {
+            upsertAll(upserted)
+        }
+        removedIds.chunked(MAX_DELETED_IDS).forEach { deleteTasks(teamId, it) }
+    }
+
+    companion object {
+        // Task IDs bound by a single delete, below the SQLite limit of 999 bound variables
+        const val MAX_DELETED_IDS = 900
+    }
+}
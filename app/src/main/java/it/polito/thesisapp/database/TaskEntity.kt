@@ -0,0 +1,78 @@
+package it.polito.thesisapp.database
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import com.google.firebase.Timestamp
+import com.google.firebase.firestore.FirebaseFirestore
+import it.polito.thesisapp.model.Task
+import it.polito.thesisapp.model.TaskStatus
+
+/**
+ * Local mirror of a document of the tasks subcollection of a team.
+ * The indexes match the sort orders and the status filter of the task lists.
+ * Names use the localized collation, so that the name index sorts them by the rules of the locale.
+ *
+ * @property teamId ID of the team
+ * @property id ID of the task document
+ * @property name Display name of the task
+ * @property description Detailed description of the task
+ * @property creationDateSeconds Seconds part of the creation timestamp
+ * @property creationDateNanos Nanoseconds part of the creation timestamp
+ * @property status Name of the [TaskStatus] of the task
+ * @property assignedMemberPaths Paths of the profile documents of the assigned members
+ */
+@Entity(
+    tableName = "tasks",
+    primaryKeys = ["teamId", "id"],
+    indices = [
+        Index("teamId", "creationDateSeconds", "creationDateNanos"),
+        Index("teamId", "name"),
+        Index("teamId", "status", "creationDateSeconds", "creationDateNanos")
+    ]
+)
+data class TaskEntity(
+    val teamId: String,
+    val id: String,
+    @ColumnInfo(collate = ColumnInfo.LOCALIZED) val name: String,
+    val description: String,
+    val creationDateSeconds: Long,
+    val creationDateNanos: Int,
+    val status: String,
+    val assignedMemberPaths: List<String>
+) {
+    /**
+     * Converts the entity to the model used by the UI.
+     *
+     * @param db Firestore instance used to rebuild the assigned member references
+     * @return The task
+     */
+    fun toModel(db: FirebaseFirestore): Task = Task(
+        id = id,
+        name = name,
+        description = description,
+        creationDate = Timestamp(creationDateSeconds, creationDateNanos),
+        status = TaskStatus.fromString(status),
+        assignedMembers = assignedMemberPaths.map { db.document(it) }
+    )
+
+    companion object {
+        /**
+         * Creates the entity mirroring a task.
+         *
+         * @param teamId ID of the team
+         * @param task The task read from Firestore
+         * @return The entity
+         */
+        fun fromModel(teamId: String, task: Task): TaskEntity = TaskEntity(
+            teamId = teamId,
+            id = task.id,
+            name = task.name,
+            description = task.description,
+            creationDateSeconds = task.creationDate.seconds,
+            creationDateNanos = task.creationDate.nanoseconds,
+            status = task.status.name,
+            assignedMemberPaths = task.assignedMembers.map { it.path }
+        )
+    }
+}
@@ -0,0 +1,11 @@
+package it.polito.thesisapp.database
+
+/**
+ * Sort orders of the task lists, shared by the local mirror queries
+ * and the views of [it.polito.thesisapp.repository.TaskIndex].
+ */
+enum class TaskOrder {
+    CREATION_DATE_DESC,
+    NAME_ASC,
+    NAME_DESC
+}
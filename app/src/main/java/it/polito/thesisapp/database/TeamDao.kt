@@ -0,0 +1,47 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Upsert
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Data access object for the mirrored teams.
+ */
+@Dao
+interface TeamDao {
+
+    /**
+     * Observes a team.
+     *
+     * @param id ID of the team
+     * @return Flow emitting the team, or null if it is not mirrored
+     */
+    @Query("SELECT * FROM teams WHERE id = :id")
+    fun observeTeam(id: String): Flow<TeamEntity?>
+
+    /**
+     * Observes a set of teams, sorted by name.
+     *
+     * @param ids IDs of the teams
+     * @return Flow emitting the mirrored teams among [ids]
+     */
+    @Query("SELECT * FROM teams WHERE id IN (:ids) ORDER BY name")
+    fun observeTeams(ids: List<String>): Flow<List<TeamEntity>>
+
+    /**
+     * Inserts or replaces a team.
+     *
+     * @param team The team to store
+     */
+    @Upsert
+    suspend fun upsertTeam(team: TeamEntity)
+
+    /**
+     * Deletes a team document.
+     *
+     * @param id ID of the team
+     */
+    @Query("DELETE FROM teams WHERE id = :id")
+    suspend fun deleteTeamDocument(id: String)
+}
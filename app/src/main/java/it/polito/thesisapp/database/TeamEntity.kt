@@ -0,0 +1,73 @@
+package it.polito.thesisapp.database
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.model.Team
+import it.polito.thesisapp.model.TeamSummary
+
+/**
+ * Local mirror of a team document, without its members and tasks.
+ * Only the number of members is mirrored, the members are loaded by the screens showing them.
+ *
+ * @property id ID of the team document
+ * @property name Display name of the team
+ * @property description Longer text describing the team's purpose
+ * @property taskCounts Number of tasks of the team by status
+ * @property memberCount Number of members of the team, or null if unknown
+ */
+@Entity(
+    tableName = "teams",
+    indices = [Index("name")]
+)
+data class TeamEntity(
+    @PrimaryKey val id: String,
+    val name: String,
+    val description: String,
+    val taskCounts: Map<TaskStatus, Long>,
+    val memberCount: Long?
+) {
+    /**
+     * Converts the entity to the summary shown by the UI.
+     *
+     * @return The summary of the team
+     */
+    fun toSummary(): TeamSummary = TeamSummary(
+        id = id,
+        name = name,
+        description = description,
+        memberCount = memberCount ?: 0L,
+        taskCounts = taskCounts
+    )
+
+    companion object {
+        /**
+         * Creates the entity mirroring a team.
+         *
+         * @param team The team read from Firestore
+         * @return The entity
+         */
+        fun fromModel(team: Team): TeamEntity = TeamEntity(
+            id = team.id,
+            name = team.name,
+            description = team.description,
+            taskCounts = team.taskCounts,
+            memberCount = team.memberCount
+        )
+
+        /**
+         * Creates the entity mirroring a team summary.
+         *
+         * @param summary The team summary read from Firestore
+         * @return The entity
+         */
+        fun fromSummary(summary: TeamSummary): TeamEntity = TeamEntity(
+            id = summary.id,
+            name = summary.name,
+            description = summary.description,
+            taskCounts = summary.taskCounts,
+            memberCount = summary.memberCount
+        )
+    }
+}
@@ -0,0 +1,56 @@
+package it.polito.thesisapp.di
+
+import android.content.Context
+import androidx.room.Room
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.android.qualifiers.ApplicationContext
+import dagger.hilt.components.SingletonComponent
+import it.polito.thesisapp.database.AppDatabase
+import it.polito.thesisapp.database.LegacyMutationImport
+import it.polito.thesisapp.database.MutationQueueDatabase
+import javax.inject.Singleton
+
+/**
+ * Dagger module that provides the local Room databases for dependency injection.
+ */
+@Module
+@InstallIn(SingletonComponent::class)
+object DatabaseModule {
+
+    /**
+     * Provides a singleton instance of the local mirror database.
+     * The mirror can always be rebuilt from Firestore, so it is recreated on schema changes.
+     * The pending mutations older versions kept in it are moved to the queue database first.
+     *
+     * @param context the application context
+     * @param queueDatabase the database of the pending mutations
+     * @return a singleton instance of AppDatabase
+     */
+    @Provides
+    @Singleton
+    fun provideAppDatabase(
+        @ApplicationContext context: Context,
+        queueDatabase: MutationQueueDatabase
+    ): AppDatabase {
+        LegacyMutationImport(context).run(queueDatabase)
+        return Room.databaseBuilder(context, AppDatabase::class.java, AppDatabase.NAME)
+            .fallbackToDestructiveMigration()
+            .build()
+    }
+
+    /**
+     * Provides a singleton instance of the database of the pending task mutations.
+     * Its content cannot be rebuilt, so it is never recreated: schema changes need a migration.
+     *
+     * @param context the application context
+     * @return a singleton instance of MutationQueueDatabase
+     */
+    @Provides
+    @Singleton
+    fun provideMutationQueueDatabase(@ApplicationContext context: Context): MutationQueueDatabase {
+        return Room.databaseBuilder(context, MutationQueueDatabase::class.java, MutationQueueDatabase.NAME)
+            .build()
+    }
+}
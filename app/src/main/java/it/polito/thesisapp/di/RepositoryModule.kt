@@ -1,10 +1,18 @@
 package it.polito.thesisapp.di
 
+import android.content.Context
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
+import dagger.hilt.android.qualifiers.ApplicationContext
 import dagger.hilt.components.SingletonComponent
+import it.polito.thesisapp.database.AppDatabase
+import it.polito.thesisapp.database.MutationQueueDatabase
+import it.polito.thesisapp.repository.LocalMirror
+import it.polito.thesisapp.repository.ProfileCache
 import it.polito.thesisapp.repository.ProfileRepository
+import it.polito.thesisapp.repository.TaskMutationQueue
+import it.polito.thesisapp.repository.TaskSearchIndex
 import it.polito.thesisapp.repository.TeamRepository
 import javax.inject.Singleton
 
@@ -26,14 +34,77 @@ object RepositoryModule {
         return ProfileRepository()
     }
 
+    /**
+     * Provides a singleton instance of ProfileCache.
+     *
+     * @return a singleton instance of ProfileCache
+     */
+    @Provides
+    @Singleton
+    fun provideProfileCache(): ProfileCache {
+        return ProfileCache()
+    }
+
+    /**
+     * Provides a singleton instance of TaskSearchIndex.
+     *
+     * @return a singleton instance of TaskSearchIndex
+     */
+    @Provides
+    @Singleton
+    fun provideTaskSearchIndex(): TaskSearchIndex {
+        return TaskSearchIndex()
+    }
+
     /**
      * Provides a singleton instance of TeamRepository.
      *
+     * @param taskSearchIndex the search index fed with the tasks of every team
      * @return a singleton instance of TeamRepository
      */
     @Provides
     @Singleton
-    fun provideTeamRepository(): TeamRepository {
-        return TeamRepository()
+    fun provideTeamRepository(taskSearchIndex: TaskSearchIndex): TeamRepository {
+        return TeamRepository(taskSearchIndex = taskSearchIndex)
+    }
+
+    /**
+     * Provides a singleton instance of LocalMirror.
+     *
+     * @param database the local database holding the mirror
+     * @param queueDatabase the local database holding the pending mutations
+     * @param profileRepository the repository the profiles are synced from
+     * @param teamRepository the repository the teams and tasks are synced from
+     * @return a singleton instance of LocalMirror
+     */
+    @Provides
+    @Singleton
+    fun provideLocalMirror(
+        database: AppDatabase,
+        queueDatabase: MutationQueueDatabase,
+        profileRepository: ProfileRepository,
+        teamRepository: TeamRepository
+    ): LocalMirror {
+        return LocalMirror(database, queueDatabase.pendingMutationDao(), profileRepository, teamRepository)
+    }
+
+    /**
+     * Provides a singleton instance of TaskMutationQueue, flushed when connectivity returns.
+     *
+     * @param context the application context
+     * @param database the local database holding the mirror
+     * @param queueDatabase the local database holding the pending mutations
+     * @return a singleton instance of TaskMutationQueue
+     */
+    @Provides
+    @Singleton
+    fun provideTaskMutationQueue(
+        @ApplicationContext context: Context,
+        database: AppDatabase,
+        queueDatabase: MutationQueueDatabase
+    ): TaskMutationQueue {
+        return TaskMutationQueue(queueDatabase.pendingMutationDao(), database.taskDao()).apply {
+            watchConnectivity(context)
+        }
     }
 }
\ No newline at end of file
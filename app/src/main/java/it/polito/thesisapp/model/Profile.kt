@@ -2,6 +2,8 @@ package it.polito.thesisapp.model
 
 import com.google.firebase.Timestamp
 import com.google.firebase.firestore.DocumentReference
+import it.polito.thesisapp.utils.Constants
+import it.polito.thesisapp.utils.SearchText
 
 /**
  * Data class representing a user profile in the application.
@@ -21,4 +23,52 @@ data class Profile(
     val lastName: String = "",
     val birthDate: Timestamp = Timestamp.now(),
     val teams: List<DocumentReference> = emptyList()
-)
+) {
+    /**
+     * Converts this profile to Firestore document data.
+     * The ID is not included, as it is the ID of the document.
+     * The normalized search fields are written along with the names they are built from.
+     *
+     * @return The document data map for Firestore
+     */
+    fun toFirestore(): Map<String, Any> = mapOf(
+        Constants.FirestoreFields.Profile.FIRST_NAME to firstName,
+        Constants.FirestoreFields.Profile.LAST_NAME to lastName,
+        Constants.FirestoreFields.Profile.BIRTH_DATE to birthDate,
+        Constants.FirestoreFields.Profile.TEAMS to teams
+    ) + searchFields(firstName, lastName)
+
+    companion object {
+        /**
+         * Builds the normalized search fields of a profile document, read by prefix searches.
+         *
+         * @param firstName The first name of the user
+         * @param lastName The last name of the user
+         * @return The search fields, by field name
+         */
+        fun searchFields(firstName: String, lastName: String): Map<String, String> = mapOf(
+            Constants.FirestoreFields.Profile.SEARCH_FIRST_LAST to SearchText.normalize("$firstName $lastName"),
+            Constants.FirestoreFields.Profile.SEARCH_LAST_FIRST to SearchText.normalize("$lastName $firstName")
+        )
+
+        /**
+         * Creates a Profile object from Firestore document data.
+         *
+         * @param id The document ID from Firestore
+         * @param data The document data map from Firestore
+         * @return A new Profile instance populated with the Firestore data
+         */
+        fun fromFirestore(id: String, data: Map<String, Any>): Profile {
+            return Profile(
+                id = id,
+                firstName = data[Constants.FirestoreFields.Profile.FIRST_NAME] as? String ?: "",
+                lastName = data[Constants.FirestoreFields.Profile.LAST_NAME] as? String ?: "",
+                birthDate = data[Constants.FirestoreFields.Profile.BIRTH_DATE] as? Timestamp
+                    ?: Timestamp.now(),
+                teams = (data[Constants.FirestoreFields.Profile.TEAMS] as? List<*>)
+                    ?.filterIsInstance<DocumentReference>()
+                    ?: emptyList()
+            )
+        }
+    }
+}
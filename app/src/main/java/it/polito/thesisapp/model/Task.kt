@@ -24,9 +24,25 @@ data class Task(
     val status: TaskStatus = TaskStatus.TODO,
     val assignedMembers: List<DocumentReference> = emptyList()
 ) {
+    /**
+     * Converts this task to Firestore document data.
+     * The ID is not included, as it is the ID of the document.
+     *
+     * @return The document data map for Firestore
+     */
+    fun toFirestore(): Map<String, Any> = mapOf(
+        Constants.FirestoreFields.Task.NAME to name,
+        Constants.FirestoreFields.Task.DESCRIPTION to description,
+        Constants.FirestoreFields.Task.CREATION_DATE to creationDate,
+        Constants.FirestoreFields.Task.STATUS to status.name,
+        Constants.FirestoreFields.Task.ASSIGNED_MEMBERS to assignedMembers
+    )
+
     companion object {
         /**
          * Creates a Task object from Firestore document data.
+         * Assigned members are read from the denormalized field of the task document,
+         * documents created before it was introduced get an empty list.
          *
          * @param id The document ID from Firestore
          * @param data The document data map from Firestore
@@ -40,7 +56,9 @@ data class Task(
                 creationDate = data[Constants.FirestoreFields.Task.CREATION_DATE] as? Timestamp
                     ?: Timestamp.now(),
                 status = TaskStatus.fromString(data[Constants.FirestoreFields.Task.STATUS] as? String),
-                assignedMembers = emptyList()
+                assignedMembers = (data[Constants.FirestoreFields.Task.ASSIGNED_MEMBERS] as? List<*>)
+                    ?.filterIsInstance<DocumentReference>()
+                    ?: emptyList()
             )
         }
     }
@@ -13,14 +13,57 @@ import it.polito.thesisapp.utils.Constants
  * @property description Longer text describing the team's purpose
  * @property members List of TeamMember objects representing the users in this team
  * @property tasks List of Task objects assigned to this team
+ * @property taskCounts Number of tasks of the team by status, maintained on the team document
+ * @property memberCount Number of members maintained on the team document, or null if unknown
  */
 data class Team(
     val id: String = "",
     val name: String = "",
     val description: String = "",
     val members: List<TeamMember> = emptyList(),
-    val tasks: List<Task> = emptyList()
+    val tasks: List<Task> = emptyList(),
+    val taskCounts: Map<TaskStatus, Long> = emptyMap(),
+    val memberCount: Long? = null
 ) {
+    /**
+     * Number of members to display: the loaded members if any, otherwise the maintained count.
+     * Lets screens that do not load the members subcollection still show how many there are.
+     *
+     * @return The number of members of the team
+     */
+    fun displayedMemberCount(): Long =
+        if (members.isNotEmpty()) members.size.toLong() else memberCount ?: 0L
+
+    /**
+     * Projects this team to the fields shown on its Home screen card.
+     *
+     * @return The summary of the team
+     */
+    fun toSummary(): TeamSummary = TeamSummary(
+        id = id,
+        name = name,
+        description = description,
+        memberCount = displayedMemberCount(),
+        taskCounts = taskCounts
+    )
+
+    /**
+     * Converts this team to Firestore document data.
+     * Members and tasks are stored in subcollections, so they are not included.
+     * A counter is written for every status, missing ones being zero.
+     * The member count is only written when known.
+     *
+     * @return The document data map for Firestore
+     */
+    fun toFirestore(): Map<String, Any> = buildMap {
+        put(Constants.FirestoreFields.Team.NAME, name)
+        put(Constants.FirestoreFields.Team.DESCRIPTION, description)
+        put(Constants.FirestoreFields.Team.TASK_COUNTS, TaskStatus.entries.associate { status ->
+            status.name to (taskCounts[status] ?: 0L)
+        })
+        memberCount?.let { put(Constants.FirestoreFields.Team.MEMBER_COUNT, it) }
+    }
+
     companion object {
         /**
          * Creates a Team object from Firestore document data.
@@ -35,7 +78,16 @@ data class Team(
                 name = data[Constants.FirestoreFields.Team.NAME] as? String ?: "",
                 description = data[Constants.FirestoreFields.Team.DESCRIPTION] as? String ?: "",
                 members = emptyList(),
-                tasks = emptyList()
+                tasks = emptyList(),
+                taskCounts = (data[Constants.FirestoreFields.Team.TASK_COUNTS] as? Map<*, *>)
+                    ?.entries
+                    ?.mapNotNull { (status, count) ->
+                        val taskStatus = TaskStatus.entries.find { it.name == status }
+                        if (taskStatus != null && count is Number) taskStatus to count.toLong() else null
+                    }
+                    ?.toMap()
+                    ?: emptyMap(),
+                memberCount = (data[Constants.FirestoreFields.Team.MEMBER_COUNT] as? Number)?.toLong()
             )
         }
     }
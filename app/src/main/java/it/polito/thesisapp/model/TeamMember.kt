@@ -1,6 +1,7 @@
 package it.polito.thesisapp.model
 
 import com.google.firebase.firestore.DocumentReference
+import it.polito.thesisapp.utils.Constants
 
 /**
  * Data class representing a team member.
@@ -14,4 +15,30 @@ import com.google.firebase.firestore.DocumentReference
 data class TeamMember(
     val role: String = "",
     val profileRef: DocumentReference? = null
-)
+) {
+    /**
+     * Converts this member to Firestore document data.
+     * The profile reference is left out when unknown, like the other optional fields.
+     *
+     * @return The document data map for Firestore
+     */
+    fun toFirestore(): Map<String, Any> = buildMap {
+        put(Constants.FirestoreFields.TeamMember.ROLE, role)
+        profileRef?.let { put(Constants.FirestoreFields.TeamMember.PROFILE_REF, it) }
+    }
+
+    companion object {
+        /**
+         * Creates a TeamMember object from Firestore document data.
+         *
+         * @param data The document data map from Firestore
+         * @return A new TeamMember instance populated with the Firestore data
+         */
+        fun fromFirestore(data: Map<String, Any>): TeamMember {
+            return TeamMember(
+                role = data[Constants.FirestoreFields.TeamMember.ROLE] as? String ?: "",
+                profileRef = data[Constants.FirestoreFields.TeamMember.PROFILE_REF] as? DocumentReference
+            )
+        }
+    }
+}
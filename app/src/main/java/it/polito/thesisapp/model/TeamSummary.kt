@@ -0,0 +1,21 @@
+package it.polito.thesisapp.model
+
+/**
+ * Data class representing the part of a team shown on its Home screen card.
+ *
+ * It only holds fields of the team document itself, so it can be read without
+ * the members and tasks subcollections.
+ *
+ * @property id Unique identifier for the team
+ * @property name Display name of the team
+ * @property description Longer text describing the team's purpose
+ * @property memberCount Number of members of the team
+ * @property taskCounts Number of tasks of the team by status
+ */
+data class TeamSummary(
+    val id: String = "",
+    val name: String = "",
+    val description: String = "",
+    val memberCount: Long = 0,
+    val taskCounts: Map<TaskStatus, Long> = emptyMap()
+)
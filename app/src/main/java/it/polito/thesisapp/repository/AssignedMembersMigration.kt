@@ -0,0 +1,92 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.DocumentReference
+import com.google.firebase.firestore.FirebaseFirestore
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.tasks.await
+
+/**
+ * One-shot migration that backfills the denormalized assigned members field of task documents
+ * from their legacy "assignedMembers" subcollection.
+ *
+ * All tasks and all assigned member documents are read with two collection group queries,
+ * then the tasks lacking the field are updated with batched writes.
+ * Tasks that already have the field are left untouched, so the migration can be run again safely.
+ *
+ * To run it against the Firestore emulator, pass an instance on which
+ * [FirebaseFirestore.useEmulator] has been called, e.g. with [connectToEmulator].
+ *
+ * @property db Firestore instance to migrate
+ */
+class AssignedMembersMigration(
+    private val db: FirebaseFirestore = FirebaseFirestore.getInstance()
+) {
+
+    /**
+     * Runs the migration.
+     *
+     * @param batchSize Maximum number of updates committed in a single batch
+     * @return Number of task documents that were updated
+     */
+    suspend fun run(batchSize: Int = MAX_BATCH_SIZE): Int {
+        require(batchSize in 1..MAX_BATCH_SIZE) { "batchSize must be in 1..$MAX_BATCH_SIZE" }
+
+        val tasksToMigrate = db.collectionGroup(Constants.FirestoreCollections.TEAM_TASKS)
+            .get()
+            .await()
+            .documents
+            .filter { !it.contains(Constants.FirestoreFields.Task.ASSIGNED_MEMBERS) }
+
+        if (tasksToMigrate.isEmpty()) {
+            return 0
+        }
+
+        val assignedMembersByTask = mutableMapOf<String, MutableList<DocumentReference>>()
+        db.collectionGroup(Constants.FirestoreCollections.TASK_ASSIGNED_MEMBERS)
+            .get()
+            .await()
+            .documents
+            .forEach { doc ->
+                val taskRef = doc.reference.parent.parent ?: return@forEach
+                val memberRef = doc.get(Constants.FirestoreFields.AssignedMember.MEMBER_REF)
+                        as? DocumentReference ?: return@forEach
+                assignedMembersByTask.getOrPut(taskRef.path) { mutableListOf() }.add(memberRef)
+            }
+
+        tasksToMigrate.chunked(batchSize).forEach { chunk ->
+            val batch = db.batch()
+            chunk.forEach { taskDoc ->
+                batch.update(
+                    taskDoc.reference,
+                    Constants.FirestoreFields.Task.ASSIGNED_MEMBERS,
+                    assignedMembersByTask[taskDoc.reference.path] ?: emptyList<DocumentReference>()
+                )
+            }
+            batch.commit().await()
+        }
+
+        return tasksToMigrate.size
+    }
+
+    companion object {
+        // Maximum number of writes allowed by Firestore in a single batch
+        const val MAX_BATCH_SIZE = TeamRepository.MAX_BATCH_WRITES
+
+        /**
+         * Creates a migration connected to the Firestore emulator.
+         * Must be called before the default Firestore instance is used for anything else.
+         *
+         * @param host Host of the Firestore emulator
+         * @param port Port of the Firestore emulator
+         * @return Migration running against the emulator
+         */
+        fun connectToEmulator(
+            host: String = Constants.Emulator.HOST,
+            port: Int = Constants.Emulator.FIRESTORE_PORT
+        ): AssignedMembersMigration {
+            val db = FirebaseFirestore.getInstance()
+            db.useEmulator(host, port)
+            return AssignedMembersMigration(db)
+        }
+    }
+}
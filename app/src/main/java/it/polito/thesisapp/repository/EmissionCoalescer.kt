@@ -0,0 +1,97 @@
+package it.polito.thesisapp.repository
+
+/**
+ * Holds back the emission of a snapshot until the child loads it started have resolved,
+ * so that a snapshot produces one coherent value instead of one partial value per child.
+ *
+ * Every snapshot starts a new generation. The held emission is released when the last
+ * pending child of the generation is loaded, or when the deadline of that generation expires.
+ * Child updates arriving while nothing is held are live updates and are emitted right away.
+ *
+ * Not thread-safe: all methods must be called from the same thread as the Firestore callbacks.
+ *
+ * @property stats Counters updated by this coalescer
+ */
+class EmissionCoalescer(
+    private val stats: EmissionStats = EmissionStats()
+) {
+    private val pending = mutableSetOf<String>()
+    private var held = false
+
+    /**
+     * Whether an emission is currently being held back.
+     */
+    val isHolding: Boolean
+        get() = held
+
+    /**
+     * Current snapshot generation.
+     */
+    var generation = 0
+        private set
+
+    /**
+     * Registers a new snapshot and the child loads it has to wait for.
+     *
+     * @param waitFor Keys of the child loads started by the snapshot
+     * @return True if the snapshot can be emitted immediately
+     */
+    fun onSnapshot(waitFor: Collection<String>): Boolean {
+        stats.recordSnapshot()
+        generation++
+        pending.addAll(waitFor)
+        held = pending.isNotEmpty()
+        return !held
+    }
+
+    /**
+     * Registers the completion of a child load.
+     *
+     * @param key Key of the child load
+     * @return True if a value has to be emitted now
+     */
+    fun onChildLoaded(key: String): Boolean {
+        pending.remove(key)
+        if (held && pending.isNotEmpty()) {
+            return false
+        }
+        held = false
+        return true
+    }
+
+    /**
+     * Forgets a child load that will never complete, e.g. because its parent was removed.
+     *
+     * @param key Key of the child load
+     * @return True if the held value has to be emitted now
+     */
+    fun cancel(key: String): Boolean {
+        if (!pending.remove(key) || !held || pending.isNotEmpty()) {
+            return false
+        }
+        held = false
+        return true
+    }
+
+    /**
+     * Handles the expiration of the deadline of a generation.
+     *
+     * @param generation Generation whose deadline expired
+     * @return True if the held value has to be emitted now
+     */
+    fun onDeadline(generation: Int): Boolean {
+        if (!held || generation != this.generation) {
+            return false
+        }
+        pending.clear()
+        held = false
+        return true
+    }
+
+    /**
+     * Records that a value was emitted.
+     */
+    fun recordEmission() {
+        stats.recordEmission()
+    }
+}
@@ -0,0 +1,43 @@
+package it.polito.thesisapp.repository
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counters of snapshots received and values emitted by repository flows.
+ */
+class EmissionStats {
+    private val snapshots = AtomicLong(0)
+    private val emissions = AtomicLong(0)
+
+    /**
+     * Number of snapshots received so far.
+     */
+    val snapshotCount: Long
+        get() = snapshots.get()
+
+    /**
+     * Number of values emitted so far.
+     */
+    val emissionCount: Long
+        get() = emissions.get()
+
+    /**
+     * Average number of emissions per snapshot, 0 if no snapshot was received.
+     */
+    val emissionsPerSnapshot: Double
+        get() = snapshotCount.let { if (it == 0L) 0.0 else emissionCount.toDouble() / it }
+
+    /**
+     * Records a received snapshot.
+     */
+    fun recordSnapshot() {
+        snapshots.incrementAndGet()
+    }
+
+    /**
+     * Records an emitted value.
+     */
+    fun recordEmission() {
+        emissions.incrementAndGet()
+    }
+}
@@ -0,0 +1,158 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.ListenerRegistration
+
+/**
+ * Hierarchical registry of Firestore listener registrations.
+ *
+ * Every registration is stored under a key path (for example `team -> members -> tasks -> taskId`).
+ * Registering a listener at a path that is already in use removes the previous listener together
+ * with its whole subtree, so when a parent listener fires again its stale children are torn down
+ * before the new ones are attached.
+ *
+ * @param onRegister Callback invoked every time a listener is registered
+ */
+class ListenerRegistry(
+    private val onRegister: () -> Unit = {}
+) {
+
+    /**
+     * Node of the registration tree.
+     *
+     * @property registration Listener registered at this node, if any
+     * @property children Child nodes keyed by their path segment
+     */
+    private class Node(
+        var registration: ListenerRegistration? = null,
+        val children: MutableMap<String, Node> = linkedMapOf()
+    )
+
+    private val root = Node()
+    private var closed = false
+
+    /**
+     * Number of listeners currently registered in the tree.
+     */
+    val size: Int
+        @Synchronized get() = countListeners(root)
+
+    /**
+     * Registers a listener at the given path, replacing any listener previously registered there.
+     * The replaced listener and all of its descendants are removed.
+     * If the registry has already been closed the listener is removed immediately.
+     *
+     * @param path Key path identifying the listener
+     * @param registration Registration returned by Firestore
+     */
+    @Synchronized
+    fun register(path: List<String>, registration: ListenerRegistration) {
+        if (closed) {
+            registration.remove()
+            return
+        }
+
+        var node = root
+        path.forEach { key ->
+            node = node.children.getOrPut(key) { Node() }
+        }
+
+        removeSubtree(node)
+        node.registration = registration
+        onRegister()
+    }
+
+    /**
+     * Checks whether a listener is registered at the given path.
+     *
+     * @param path Key path of the listener
+     * @return True if a listener is registered at that path
+     */
+    @Synchronized
+    operator fun contains(path: List<String>): Boolean = find(path)?.registration != null
+
+    /**
+     * Removes every child of the node at the given path whose key is not in [keys].
+     * Used when a collection listener fires and some of its documents disappeared.
+     *
+     * @param path Key path of the parent node
+     * @param keys Keys of the children to keep
+     */
+    @Synchronized
+    fun retainChildren(path: List<String>, keys: Set<String>) {
+        val node = find(path) ?: return
+        val iterator = node.children.entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.key !in keys) {
+                removeSubtree(entry.value)
+                iterator.remove()
+            }
+        }
+    }
+
+    /**
+     * Removes the listener at the given path and all of its descendants.
+     *
+     * @param path Key path of the listener to remove
+     */
+    @Synchronized
+    fun remove(path: List<String>) {
+        if (path.isEmpty()) {
+            removeSubtree(root)
+            return
+        }
+
+        val parent = find(path.dropLast(1)) ?: return
+        val node = parent.children.remove(path.last()) ?: return
+        removeSubtree(node)
+    }
+
+    /**
+     * Removes every registered listener and marks the registry as closed,
+     * so that callbacks firing late cannot attach new listeners.
+     */
+    @Synchronized
+    fun close() {
+        closed = true
+        removeSubtree(root)
+    }
+
+    /**
+     * Finds the node at the given path.
+     *
+     * @param path Key path of the node
+     * @return The node, or null if no node exists at that path
+     */
+    private fun find(path: List<String>): Node? {
+        var node = root
+        path.forEach { key ->
+            node = node.children[key] ?: return null
+        }
+        return node
+    }
+
+    /**
+     * Removes all listeners registered below (and at) the given node and clears its children.
+     *
+     * @param node Root of the subtree to clear
+     */
+    private fun removeSubtree(node: Node) {
+        node.children.values.forEach { child ->
+            removeSubtree(child)
+        }
+        node.children.clear()
+        node.registration?.remove()
+        node.registration = null
+    }
+
+    /**
+     * Counts the listeners registered in the subtree rooted at the given node.
+     *
+     * @param node Root of the subtree
+     * @return Number of registered listeners
+     */
+    private fun countListeners(node: Node): Int {
+        val own = if (node.registration != null) 1 else 0
+        return own + node.children.values.sumOf { countListeners(it) }
+    }
+}
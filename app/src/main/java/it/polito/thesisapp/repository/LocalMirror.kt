@@ -0,0 +1,330 @@
+package it.polito.thesisapp.repository
+
+import android.util.Log
+import androidx.room.withTransaction
+import com.google.firebase.firestore.DocumentReference
+import com.google.firebase.firestore.FirebaseFirestore
+import it.polito.thesisapp.database.AppDatabase
+import it.polito.thesisapp.database.PendingMutationDao
+import it.polito.thesisapp.database.ProfileEntity
+import it.polito.thesisapp.database.TaskEntity
+import it.polito.thesisapp.database.TaskOrder
+import it.polito.thesisapp.database.TeamEntity
+import it.polito.thesisapp.model.Profile
+import it.polito.thesisapp.model.Task
+import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.model.Team
+import it.polito.thesisapp.model.TeamSummary
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Sync layer between Firestore and the local Room mirror.
+ *
+ * Every observe function returns a flow reading from Room, so that the last known data is
+ * rendered immediately on cold start and sorting and filtering run on the indexes of the
+ * database. While such a flow is collected, the matching Firestore listeners of the
+ * repositories are collected too and each snapshot is written into Room, which in turn
+ * re-emits the updated rows.
+ *
+ * @property database Room database holding the mirror
+ * @property pendingMutationDao DAO of the task mutations not written to Firestore yet
+ * @property profileRepository Repository the profiles are synced from
+ * @property teamRepository Repository the teams and tasks are synced from
+ * @property db Firestore instance used to rebuild document references
+ * @property scope Scope in which the task syncs shared between collectors run
+ */
+class LocalMirror(
+    private val database: AppDatabase,
+    private val pendingMutationDao: PendingMutationDao,
+    private val profileRepository: ProfileRepository,
+    private val teamRepository: TeamRepository,
+    private val db: FirebaseFirestore = FirebaseFirestore.getInstance(),
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+) {
+    /**
+     * What was last written into the mirror for a team.
+     *
+     * @property entity The team row
+     * @property tasks The task rows, keyed by task ID
+     */
+    private class StoredTeam(val entity: TeamEntity, val tasks: Map<String, Task>)
+
+    private val profileDao = database.profileDao()
+    private val teamDao = database.teamDao()
+    private val taskDao = database.taskDao()
+
+    // Task syncs shared by all the collectors of a team, keyed by team ID
+    private val teamTaskSyncs = SharedFlowCache<Unit>(scope, lingerMillis = 0)
+
+    /**
+     * Observes a profile, syncing it from Firestore while collected.
+     *
+     * @param userId ID of the profile
+     * @return Flow emitting the mirrored profile, or null if it does not exist
+     */
+    fun observeProfile(userId: String): Flow<Profile?> = mirrored(
+        remote = profileRepository.getProfileFlow(userId).map { profile ->
+            storeProfile(userId, profile)
+            profile != null
+        },
+        local = profileDao.observeProfile(userId).map { it?.toModel(db) },
+        missing = null
+    )
+
+    /**
+     * Observes the mirrored summaries of a set of teams, sorted by name.
+     * The summaries are kept up to date while each team is synced with [syncTeamSummary].
+     *
+     * @param teamIds IDs of the teams
+     * @return Flow emitting the mirrored team summaries
+     */
+    fun observeTeamSummaries(teamIds: List<String>): Flow<List<TeamSummary>> =
+        teamDao.observeTeams(teamIds).map { teams -> teams.map { it.toSummary() } }.distinctUntilChanged()
+
+    /**
+     * Syncs the summary of a team from Firestore into the mirror while collected.
+     * Only the team document is read, not its members nor its tasks, which are synced by
+     * [syncTeamTasks] for the teams being shown.
+     *
+     * @param teamRef Reference to the team document
+     * @return Flow emitting once every time a snapshot of the team document has been stored
+     */
+    fun syncTeamSummary(teamRef: DocumentReference): Flow<Unit> =
+        teamRepository.getTeamSummaryFlow(teamRef)
+            .map { summary -> storeTeamSummary(teamRef.id, summary) }
+            .catch { e -> Log.e(TAG, "Failed to sync the summary of team ${teamRef.id}", e) }
+
+    /**
+     * Observes the mirrored tasks of a team, sorted and filtered by the database.
+     * The tasks are kept up to date while the team is synced with [syncTeamTasks], so that
+     * the caller decides which teams keep their tasks listened to.
+     *
+     * @param teamId ID of the team
+     * @param order Sort order of the tasks
+     * @param statuses Statuses of the tasks to include
+     * @return Flow emitting the sorted tasks
+     */
+    fun observeTasks(
+        teamId: String,
+        order: TaskOrder,
+        statuses: Collection<TaskStatus> = TaskStatus.entries
+    ): Flow<List<Task>> {
+        val statusNames = statuses.map { it.name }
+        val entities = when (order) {
+            TaskOrder.CREATION_DATE_DESC -> taskDao.observeTasksByDateDesc(teamId, statusNames)
+            TaskOrder.NAME_ASC -> taskDao.observeTasksByNameAsc(teamId, statusNames)
+            TaskOrder.NAME_DESC -> taskDao.observeTasksByNameDesc(teamId, statusNames)
+        }
+        return entities.map { tasks -> tasks.map { it.toModel(db) } }.distinctUntilChanged()
+    }
+
+    /**
+     * Syncs a team and its tasks from Firestore into the mirror while collected, without
+     * reading them back. Lets the tasks of a team be kept warm before they are shown.
+     * Collectors of the same team share a single sync, so each snapshot is written once.
+     *
+     * @param teamId ID of the team
+     * @return Flow emitting once every time a snapshot of the team has been stored
+     */
+    fun syncTeamTasks(teamId: String): Flow<Unit> =
+        teamTaskSyncs.get(teamId) { createTeamTasksSync(teamId) }
+            .catch { e -> Log.e(TAG, "Failed to sync the tasks of team $teamId", e) }
+
+    /**
+     * Creates the sync of a team and its tasks, writing only the rows that changed since
+     * the previous snapshot.
+     *
+     * @param teamId ID of the team
+     * @return Flow emitting once every time a snapshot of the team has been stored
+     */
+    private fun createTeamTasksSync(teamId: String): Flow<Unit> = flow {
+        var stored: StoredTeam? = null
+        teamRepository.getTeamFlow(db.collection(Constants.FirestoreCollections.TEAMS).document(teamId))
+            .collect { team ->
+                stored = storeTeam(teamId, team, stored)
+                emit(Unit)
+            }
+    }
+
+    /**
+     * Observes a single task, syncing it from Firestore while collected.
+     *
+     * @param teamId ID of the team
+     * @param taskId ID of the task
+     * @return Flow emitting the mirrored task, or null if it does not exist
+     */
+    fun observeTask(teamId: String, taskId: String): Flow<Task?> = mirrored(
+        remote = teamRepository.getTaskFlow(teamId, taskId).map { task ->
+            storeTask(teamId, taskId, task)
+            task != null
+        },
+        local = taskDao.observeTask(teamId, taskId).map { it?.toModel(db) },
+        missing = null
+    )
+
+    /**
+     * Combines a Room flow with the Firestore sync feeding it.
+     *
+     * Values read from Room before Firestore has delivered anything are only emitted if they
+     * are not [missing], so that an empty mirror does not look like a deleted document.
+     * If Firestore then reports the data as missing, or fails, before anything was emitted,
+     * [missing] is emitted so that the caller stops waiting.
+     *
+     * @param remote Sync flow, emitting whether the data exists after writing it into Room
+     * @param local Room flow reading the mirrored data
+     * @param missing Value representing missing data
+     * @return Flow emitting the mirrored data
+     */
+    private fun <T> mirrored(remote: Flow<Boolean>, local: Flow<T>, missing: T): Flow<T> = channelFlow {
+        val delivered = AtomicBoolean(false)
+        val emitted = AtomicBoolean(false)
+
+        launch {
+            remote
+                .catch { e ->
+                    Log.e(TAG, "Failed to sync the local mirror", e)
+                    emit(false)
+                }
+                .collect { exists ->
+                    delivered.set(true)
+                    if (!exists && !emitted.get()) {
+                        emitted.set(true)
+                        send(missing)
+                    }
+                }
+        }
+
+        local.collect { value ->
+            if (value != missing || delivered.get()) {
+                emitted.set(true)
+                send(value)
+            }
+        }
+    }.distinctUntilChanged()
+
+    /**
+     * Writes a profile snapshot into the mirror.
+     *
+     * @param userId ID of the profile
+     * @param profile The profile, or null if it was deleted
+     */
+    private suspend fun storeProfile(userId: String, profile: Profile?) {
+        if (profile != null) {
+            profileDao.upsert(ProfileEntity.fromModel(userId, profile))
+        } else {
+            profileDao.delete(userId)
+        }
+    }
+
+    /**
+     * Writes a team summary into the mirror, leaving its tasks untouched.
+     *
+     * @param teamId ID of the team
+     * @param summary The team summary, or null if the team was deleted
+     */
+    private suspend fun storeTeamSummary(teamId: String, summary: TeamSummary?) = database.withTransaction {
+        if (summary != null) {
+            teamDao.upsertTeam(TeamEntity.fromSummary(summary))
+        } else {
+            teamDao.deleteTeamDocument(teamId)
+            taskDao.deleteTeamTasks(teamId)
+        }
+    }
+
+    /**
+     * Writes a team snapshot, including its tasks, into the mirror.
+     * Unchanged tasks keep the same instance across snapshots, so only the tasks added or
+     * modified since [previous] are written and only the removed ones are deleted. Without a
+     * previous snapshot the rows already mirrored are read and compared instead.
+     * Status changes still queued in [TaskMutationQueue] are kept over the snapshot values.
+     *
+     * @param teamId ID of the team
+     * @param team The team, or null if it was deleted
+     * @param previous What was written for the previous snapshot, null for the first one
+     * @return What was written for this snapshot, null if the team was deleted
+     */
+    private suspend fun storeTeam(teamId: String, team: Team?, previous: StoredTeam?): StoredTeam? =
+        database.withTransaction {
+            if (team == null) {
+                teamDao.deleteTeamDocument(teamId)
+                taskDao.deleteTeamTasks(teamId)
+                return@withTransaction null
+            }
+
+            val entity = TeamEntity.fromModel(team)
+            if (entity != previous?.entity) {
+                teamDao.upsertTeam(entity)
+            }
+
+            val tasks = team.tasks.associateBy { it.id }
+            val pendingStatuses = pendingStatuses(teamId)
+            if (previous != null) {
+                taskDao.applyTeamTaskChanges(
+                    teamId,
+                    upserted = team.tasks
+                        .filter { it != previous.tasks[it.id] }
+                        .map { TaskEntity.fromModel(teamId, it).withPendingStatus(pendingStatuses) },
+                    removedIds = previous.tasks.keys - tasks.keys
+                )
+            } else {
+                val mirrored = taskDao.getTeamTasks(teamId).associateBy { it.id }
+                taskDao.applyTeamTaskChanges(
+                    teamId,
+                    upserted = team.tasks
+                        .map { TaskEntity.fromModel(teamId, it).withPendingStatus(pendingStatuses) }
+                        .filter { it != mirrored[it.id] },
+                    removedIds = mirrored.keys - tasks.keys
+                )
+            }
+            StoredTeam(entity, tasks)
+        }
+
+    /**
+     * Writes a task snapshot into the mirror.
+     *
+     * @param teamId ID of the team
+     * @param taskId ID of the task
+     * @param task The task, or null if it was deleted
+     */
+    private suspend fun storeTask(teamId: String, taskId: String, task: Task?) {
+        if (task != null) {
+            taskDao.upsert(TaskEntity.fromModel(teamId, task).withPendingStatus(pendingStatuses(teamId)))
+        } else {
+            taskDao.delete(teamId, taskId)
+        }
+    }
+
+    /**
+     * Reads the status changes of the tasks of a team that are queued and not written yet.
+     *
+     * @param teamId ID of the team
+     * @return Name of the pending status of each task, keyed by task ID
+     */
+    private suspend fun pendingStatuses(teamId: String): Map<String, String> =
+        pendingMutationDao.getTeamMutations(teamId, Constants.FirestoreFields.Task.STATUS)
+            .associate { it.taskId to it.value }
+
+    /**
+     * Replaces the status of a task row with its pending status, if any.
+     *
+     * @param pendingStatuses Name of the pending status of each task, keyed by task ID
+     * @return The row to store
+     */
+    private fun TaskEntity.withPendingStatus(pendingStatuses: Map<String, String>): TaskEntity =
+        pendingStatuses[id]?.let { copy(status = it) } ?: this
+
+    companion object {
+        private const val TAG = "LocalMirror"
+    }
+}
@@ -0,0 +1,219 @@
+package it.polito.thesisapp.repository
+
+import android.util.Log
+import com.google.firebase.firestore.DocumentSnapshot
+import com.google.firebase.firestore.FirebaseFirestoreException
+import com.google.firebase.firestore.Query
+import com.google.firebase.firestore.QuerySnapshot
+import it.polito.thesisapp.model.Task
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+
+/**
+ * Live, cursor-paged list of the tasks of a team.
+ *
+ * Only the first page is read until [loadNextPage] is called. Each page is a live listener:
+ * the last page is a `limit` query starting after the previous page, while the pages before it
+ * are bounded by the cursors of their first and last documents. When a new page is requested the
+ * current last page is re-anchored to end at its last document, so that new tasks appear live in
+ * the page whose range contains them (the first one when sorting by creation date) without
+ * shifting documents out of the following ones.
+ *
+ * If the query fails because a composite index is missing, the source starts over with
+ * [fallbackQuery], whose results the caller is expected to filter and sort in memory.
+ * Since a sort can only be correct over the whole set, the fallback source keeps loading
+ * pages on its own, [FALLBACK_PAGE_SIZE] tasks at a time, until [endReached].
+ *
+ * Must be used from the main thread, where Firestore delivers its callbacks.
+ *
+ * @property query Ordered (and possibly filtered) query of the tasks, without limit and cursors
+ * @property pageSize Number of tasks read per page
+ * @property fallbackQuery Query needing no composite index, used when [query] cannot be run
+ */
+class PagedTaskSource(
+    private var query: Query,
+    private var pageSize: Long,
+    private var fallbackQuery: Query? = null
+) {
+
+    /**
+     * State of a loaded page.
+     *
+     * @property startAfter Last document of the previous page, null for the first page
+     * @property endAt Last document of this page once it has been anchored, null while open ended
+     * @property store Tasks of the page
+     * @property taskIds IDs of the tasks of the page, in query order
+     * @property lastDocument Last document of the latest snapshot of the page
+     */
+    private class Page(
+        val startAfter: DocumentSnapshot?,
+        var endAt: DocumentSnapshot? = null,
+        val store: TaskStore = TaskStore(),
+        var taskIds: List<String> = emptyList(),
+        var lastDocument: DocumentSnapshot? = null
+    )
+
+    private val pages = mutableListOf<Page>()
+    private var registry = ListenerRegistry()
+
+    private val _tasks = MutableStateFlow<List<Task>>(emptyList())
+
+    /**
+     * Tasks of all loaded pages, in query order.
+     */
+    val tasks: StateFlow<List<Task>> = _tasks
+
+    private val _isLoadingPage = MutableStateFlow(true)
+
+    /**
+     * Whether a page is being loaded.
+     */
+    val isLoadingPage: StateFlow<Boolean> = _isLoadingPage
+
+    private val _endReached = MutableStateFlow(false)
+
+    /**
+     * Whether all the tasks matching the query have been loaded.
+     */
+    val endReached: StateFlow<Boolean> = _endReached
+
+    private val _usesFallback = MutableStateFlow(false)
+
+    /**
+     * Whether the source switched to the fallback query because of a missing index.
+     */
+    val usesFallback: StateFlow<Boolean> = _usesFallback
+
+    init {
+        addPage(startAfter = null)
+    }
+
+    /**
+     * Loads the next page, unless a page is already loading or the end has been reached.
+     */
+    fun loadNextPage() {
+        if (_isLoadingPage.value || _endReached.value) {
+            return
+        }
+        val last = pages.lastOrNull() ?: return
+        val cursor = last.lastDocument ?: return
+
+        // Anchor the current last page so it keeps its documents when the new page is added
+        last.endAt = cursor
+        listen(pages.lastIndex, last)
+        addPage(startAfter = cursor)
+    }
+
+    /**
+     * Removes all the listeners of this source.
+     */
+    fun close() {
+        registry.close()
+    }
+
+    /**
+     * Appends a new open ended page.
+     *
+     * @param startAfter Last document of the previous page
+     */
+    private fun addPage(startAfter: DocumentSnapshot?) {
+        _isLoadingPage.value = true
+        val page = Page(startAfter)
+        pages.add(page)
+        listen(pages.lastIndex, page)
+    }
+
+    /**
+     * Registers (or replaces) the listener of a page.
+     *
+     * @param index Index of the page
+     * @param page Page to listen to
+     */
+    private fun listen(index: Int, page: Page) {
+        var pageQuery = query
+        page.startAfter?.let { pageQuery = pageQuery.startAfter(it) }
+        pageQuery = page.endAt?.let { pageQuery.endAt(it) } ?: pageQuery.limit(pageSize)
+
+        registry.register(
+            listOf(index.toString()),
+            pageQuery.addSnapshotListener { snapshot, error ->
+                handlePageSnapshot(page, snapshot, error)
+            }
+        )
+    }
+
+    /**
+     * Applies a page snapshot and publishes the tasks of all pages.
+     *
+     * @param page Page the snapshot belongs to
+     * @param snapshot Query snapshot of the page
+     * @param error Potential error from Firestore
+     */
+    private fun handlePageSnapshot(page: Page, snapshot: QuerySnapshot?, error: Exception?) {
+        if (error != null) {
+            val fallback = fallbackQuery
+            if (fallback != null &&
+                (error as? FirebaseFirestoreException)?.code == FirebaseFirestoreException.Code.FAILED_PRECONDITION
+            ) {
+                Log.w(TAG, "Missing index for tasks query, falling back to in-memory processing", error)
+                restartWith(fallback)
+                return
+            }
+            Log.e(TAG, "Failed to load tasks page", error)
+            _isLoadingPage.value = false
+            return
+        }
+        if (snapshot == null) {
+            return
+        }
+
+        page.store.apply(
+            snapshot.documentChanges.map { change ->
+                TaskStore.Change(change.type, change.document.id, change.document.data)
+            }
+        )
+        page.taskIds = snapshot.documents.map { it.id }
+        page.lastDocument = snapshot.documents.lastOrNull() ?: page.lastDocument
+
+        if (page === pages.last() && page.endAt == null) {
+            _isLoadingPage.value = false
+            _endReached.value = snapshot.size() < pageSize
+            if (_usesFallback.value) {
+                loadNextPage()
+            }
+        }
+
+        // Documents can briefly belong to two pages while a page is re-anchored
+        val ids = mutableSetOf<String>()
+        _tasks.value = pages.flatMap { loadedPage ->
+            loadedPage.taskIds.mapNotNull { id -> loadedPage.store[id]?.takeIf { ids.add(id) } }
+        }
+    }
+
+    /**
+     * Drops all loaded pages and starts reading again with another query.
+     *
+     * @param newQuery Query to use from now on
+     */
+    private fun restartWith(newQuery: Query) {
+        registry.close()
+        registry = ListenerRegistry()
+        pages.clear()
+        query = newQuery
+        pageSize = maxOf(pageSize, FALLBACK_PAGE_SIZE)
+        fallbackQuery = null
+        _usesFallback.value = true
+        _endReached.value = false
+        addPage(startAfter = null)
+    }
+
+    companion object {
+        private const val TAG = "PagedTaskSource"
+
+        // Default number of tasks read per page
+        const val DEFAULT_PAGE_SIZE = 20L
+
+        // Number of tasks read per page while loading the whole set with the fallback query
+        const val FALLBACK_PAGE_SIZE = 500L
+    }
+}
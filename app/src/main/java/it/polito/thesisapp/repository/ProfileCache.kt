@@ -0,0 +1,184 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.DocumentReference
+import com.google.firebase.firestore.DocumentSnapshot
+import com.google.firebase.firestore.FieldPath
+import com.google.firebase.firestore.FirebaseFirestore
+import it.polito.thesisapp.model.Profile
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.tasks.await
+
+/**
+ * Resolves profile references into profiles with as few reads as possible.
+ *
+ * Profiles are read with `whereIn(documentId)` queries of up to [MAX_IDS_PER_QUERY] IDs
+ * instead of one read per reference, and kept in a bounded LRU cache. Concurrent requests
+ * for the same profile share a single read. Profiles observed with [observeProfiles] are
+ * kept up to date by live listeners, which also refresh the cached entries.
+ *
+ * @property db Firestore instance the profiles are read from
+ * @property maxSize Maximum number of profiles kept in the cache
+ * @property scope Scope in which the reads run, so that a cancelled caller does not cancel
+ * the other callers sharing its reads
+ */
+class ProfileCache(
+    private val db: FirebaseFirestore = FirebaseFirestore.getInstance(),
+    private val maxSize: Int = DEFAULT_MAX_SIZE,
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+) {
+    private val profilesCollection = db.collection(Constants.FirestoreCollections.PROFILES)
+
+    // Cached profiles by ID, in access order so that the least recently used is evicted first
+    private val cache = object : LinkedHashMap<String, Profile>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Profile>?): Boolean =
+            size > maxSize
+    }
+
+    // Reads in progress by profile ID, resolving to null if the profile does not exist
+    private val inFlight = mutableMapOf<String, Deferred<Profile?>>()
+
+    /**
+     * Returns the cached profile of a reference, without reading it.
+     *
+     * @param ref Reference to the profile document
+     * @return The cached profile, or null if it is not cached
+     */
+    fun getCached(ref: DocumentReference): Profile? = synchronized(this) { cache[ref.id] }
+
+    /**
+     * Resolves a set of profile references, reading only the profiles that are not cached
+     * nor already being read.
+     * Reads run in [scope]: cancelling a caller only stops its own wait.
+     *
+     * @param refs References to the profile documents
+     * @return Resolved profiles by ID, without the profiles that do not exist
+     */
+    suspend fun resolve(refs: Collection<DocumentReference>): Map<String, Profile> {
+        val ids = refs.map { it.id }.distinct()
+        val resolved = mutableMapOf<String, Profile>()
+        val pending = mutableMapOf<String, Deferred<Profile?>>()
+        val toRead = mutableMapOf<String, CompletableDeferred<Profile?>>()
+
+        synchronized(this) {
+            ids.forEach { id ->
+                val cached = cache[id]
+                val reading = inFlight[id]
+                when {
+                    cached != null -> resolved[id] = cached
+                    reading != null -> pending[id] = reading
+                    else -> CompletableDeferred<Profile?>().also {
+                        toRead[id] = it
+                        pending[id] = it
+                        inFlight[id] = it
+                    }
+                }
+            }
+        }
+
+        toRead.keys.chunked(MAX_IDS_PER_QUERY).forEach { chunk ->
+            scope.launch { read(chunk, toRead) }
+        }
+
+        pending.forEach { (id, deferred) ->
+            deferred.await()?.let { resolved[id] = it }
+        }
+        return resolved
+    }
+
+    /**
+     * Observes a set of profile references, emitting the cached profiles right away and then
+     * the live profiles. One listener is registered per chunk of [MAX_IDS_PER_QUERY] IDs.
+     *
+     * @param refs References to the profile documents
+     * @return Flow emitting the resolved profiles by ID
+     */
+    fun observeProfiles(refs: Collection<DocumentReference>): Flow<Map<String, Profile>> = callbackFlow {
+        val ids = refs.map { it.id }.distinct()
+        val profiles = mutableMapOf<String, Profile>()
+        val registry = ListenerRegistry()
+
+        synchronized(this@ProfileCache) {
+            ids.forEach { id -> cache[id]?.let { profiles[id] = it } }
+        }
+        if (profiles.isNotEmpty() || ids.isEmpty()) {
+            trySend(profiles.toMap())
+        }
+
+        ids.chunked(MAX_IDS_PER_QUERY).forEachIndexed { index, chunk ->
+            registry.register(
+                listOf(index.toString()),
+                profilesCollection.whereIn(FieldPath.documentId(), chunk)
+                    .addSnapshotListener { snapshot, error ->
+                        if (error != null || snapshot == null) {
+                            return@addSnapshotListener
+                        }
+                        val found = snapshot.documents.mapNotNull { it.toProfile() }
+                        store(found, missingIds = chunk - found.map { it.id }.toSet())
+
+                        chunk.forEach { profiles.remove(it) }
+                        found.forEach { profiles[it.id] = it }
+                        trySend(profiles.toMap())
+                    }
+            )
+        }
+
+        awaitClose { registry.close() }
+    }
+
+    /**
+     * Reads a chunk of profiles and completes the requests waiting for them.
+     *
+     * @param ids IDs of the profiles, at most [MAX_IDS_PER_QUERY]
+     * @param results Requests to complete, by profile ID
+     */
+    private suspend fun read(ids: List<String>, results: Map<String, CompletableDeferred<Profile?>>) {
+        try {
+            val found = profilesCollection.whereIn(FieldPath.documentId(), ids)
+                .get()
+                .await()
+                .documents
+                .mapNotNull { it.toProfile() }
+                .associateBy { it.id }
+            store(found.values, missingIds = emptyList())
+            ids.forEach { id -> results[id]?.complete(found[id]) }
+        } catch (e: Exception) {
+            ids.forEach { id -> results[id]?.completeExceptionally(e) }
+        } finally {
+            synchronized(this) { ids.forEach { inFlight.remove(it) } }
+        }
+    }
+
+    /**
+     * Updates the cache with fresh profiles.
+     *
+     * @param profiles Profiles read from Firestore
+     * @param missingIds IDs of profiles known not to exist anymore
+     */
+    private fun store(profiles: Collection<Profile>, missingIds: Collection<String>) = synchronized(this) {
+        profiles.forEach { cache[it.id] = it }
+        missingIds.forEach { cache.remove(it) }
+    }
+
+    /**
+     * Maps a profile document, keeping its ID.
+     */
+    private fun DocumentSnapshot.toProfile(): Profile? =
+        data?.let { Profile.fromFirestore(id, it) }
+
+    companion object {
+        // Maximum number of values accepted by a Firestore whereIn filter
+        const val MAX_IDS_PER_QUERY = 30
+
+        // Default number of profiles kept in the cache
+        const val DEFAULT_MAX_SIZE = 500
+    }
+}
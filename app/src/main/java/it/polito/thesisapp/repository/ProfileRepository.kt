@@ -4,9 +4,15 @@ import com.google.firebase.Firebase
 import com.google.firebase.firestore.firestore
 import it.polito.thesisapp.model.Profile
 import it.polito.thesisapp.utils.Constants
+import it.polito.thesisapp.utils.NameCollation
+import it.polito.thesisapp.utils.SearchText
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.tasks.await
 
 /**
  * Repository class for managing user profiles.
@@ -15,14 +21,24 @@ class ProfileRepository {
     private val db = Firebase.firestore
     private val profilesCollection = db.collection(Constants.FirestoreCollections.PROFILES)
 
+    // Locale-aware ordering of the search results by name
+    private val nameCollation = NameCollation()
+
+    // Whether some profiles may still lack the search fields, null until read from the config
+    @Volatile
+    private var legacyProfiles: Boolean? = null
+
     /**
      * Retrieves a flow of Profile objects for a given user ID.
+     * The listener delivers the cached profile first, if any, and then live server data.
      *
      * @param userId The unique identifier of the user.
      * @return A Flow emitting Profile objects or null if the profile does not exist.
      */
     fun getProfileFlow(userId: String): Flow<Profile?> = callbackFlow {
-        val subscription = profilesCollection.document(userId)
+        val profileRef = profilesCollection.document(userId)
+
+        val subscription = profileRef
             .addSnapshotListener { snapshot, error ->
                 if (error != null) {
                     close(error)
@@ -30,8 +46,7 @@ class ProfileRepository {
                 }
 
                 if (snapshot != null && snapshot.exists()) {
-                    val profile = snapshot.toObject(Profile::class.java)
-                    trySend(profile)
+                    trySend(Profile.fromFirestore(snapshot.id, snapshot.data ?: emptyMap()))
                 } else {
                     trySend(null)
                 }
@@ -40,27 +55,120 @@ class ProfileRepository {
     }
 
     /**
-     * Retrieves a flow of all Profile objects.
+     * Searches the profiles whose first or last name starts with a query, one page at a time.
+     * Each name order is read with a prefix range query on its normalized search field,
+     * so only the requested page is read. An empty query browses all profiles by name.
+     * Profiles written before the search fields existed are not found by those queries until
+     * [ProfileSearchMigration] has run. Until then the profile search config flags them, and
+     * when the first page is empty the first [FALLBACK_LIMIT] profiles by first name are read
+     * and filtered in memory instead. Once the migration has cleared the flag, a search
+     * without matches only costs its range queries.
      *
-     * @return A Flow emitting a list of Profile objects.
+     * @param query The text typed by the user.
+     * @param pageSize The maximum number of profiles read by each search query.
+     * @param previous The previous page of the same search, to read the next one.
+     * @return The page of matching profiles.
      */
-    fun getAllProfilesFlow(): Flow<List<Profile>> = callbackFlow {
-        val subscription = profilesCollection
-            .addSnapshotListener { snapshot, error ->
-                if (error != null) {
-                    close(error)
-                    return@addSnapshotListener
-                }
+    suspend fun searchProfiles(
+        query: String,
+        pageSize: Long = SEARCH_PAGE_SIZE,
+        previous: ProfileSearchPage? = null
+    ): ProfileSearchPage = coroutineScope {
+        val prefix = previous?.query ?: SearchText.normalize(query)
+        val fields = previous?.cursors?.keys
+            ?: if (prefix.isEmpty()) {
+                listOf(Constants.FirestoreFields.Profile.SEARCH_FIRST_LAST)
+            } else {
+                listOf(
+                    Constants.FirestoreFields.Profile.SEARCH_FIRST_LAST,
+                    Constants.FirestoreFields.Profile.SEARCH_LAST_FIRST
+                )
+            }
 
-                if (snapshot != null) {
-                    val profiles = snapshot.documents.mapNotNull {
-                        it.toObject(Profile::class.java)?.copy(id = it.id)
-                    }
-                    trySend(profiles)
-                } else {
-                    trySend(emptyList())
+        val results = fields.map { field ->
+            async {
+                var searchQuery = profilesCollection.orderBy(field)
+                if (prefix.isNotEmpty()) {
+                    searchQuery = searchQuery
+                        .whereGreaterThanOrEqualTo(field, prefix)
+                        .whereLessThan(field, prefix + PREFIX_END)
                 }
+                previous?.cursors?.get(field)?.let { searchQuery = searchQuery.startAfter(it) }
+                field to searchQuery.limit(pageSize).get().await()
             }
-        awaitClose { subscription.remove() }
+        }.awaitAll()
+
+        if (previous == null && results.all { (_, snapshot) -> snapshot.isEmpty } && hasLegacyProfiles()) {
+            return@coroutineScope searchProfilesByFirstName(prefix)
+        }
+
+        ProfileSearchPage(
+            query = prefix,
+            profiles = results
+                .flatMap { (_, snapshot) -> snapshot.documents }
+                .distinctBy { it.id }
+                .map { Profile.fromFirestore(it.id, it.data ?: emptyMap()) }
+                .let { profiles -> nameCollation.sort(profiles, { it.firstName }, { it.lastName }) },
+            cursors = results
+                .filter { (_, snapshot) -> snapshot.size() >= pageSize }
+                .associate { (field, snapshot) -> field to snapshot.documents.last() }
+        )
+    }
+
+    /**
+     * Reads whether some profiles may still lack the search fields, once per repository.
+     * The flag is set in the profile search config until [ProfileSearchMigration] clears it.
+     * A missing flag means that every profile has the search fields.
+     *
+     * @return True if the in-memory fallback search is still needed.
+     */
+    private suspend fun hasLegacyProfiles(): Boolean {
+        legacyProfiles?.let { return it }
+        return try {
+            val snapshot = db.collection(Constants.FirestoreCollections.CONFIG)
+                .document(Constants.FirestoreConfigDocuments.PROFILE_SEARCH)
+                .get()
+                .await()
+            (snapshot.getBoolean(Constants.FirestoreFields.ProfileSearchConfig.LEGACY_PROFILES) == true)
+                .also { legacyProfiles = it }
+        } catch (e: Exception) {
+            false
+        }
+    }
+
+    /**
+     * Searches the first [FALLBACK_LIMIT] profiles by first name, matching the normalized
+     * names in memory. Used while the search fields have not been backfilled.
+     *
+     * @param prefix The normalized query.
+     * @return The only page of matching profiles.
+     */
+    private suspend fun searchProfilesByFirstName(prefix: String): ProfileSearchPage {
+        val profiles = profilesCollection
+            .orderBy(Constants.FirestoreFields.Profile.FIRST_NAME)
+            .limit(FALLBACK_LIMIT)
+            .get()
+            .await()
+            .documents
+            .map { Profile.fromFirestore(it.id, it.data ?: emptyMap()) }
+            .filter { profile ->
+                Profile.searchFields(profile.firstName, profile.lastName).values.any { it.startsWith(prefix) }
+            }
+        return ProfileSearchPage(
+            query = prefix,
+            profiles = nameCollation.sort(profiles, { it.firstName }, { it.lastName }),
+            cursors = emptyMap()
+        )
+    }
+
+    companion object {
+        // Default number of profiles read by each search query
+        const val SEARCH_PAGE_SIZE = 20L
+
+        // Number of profiles read by first name while the search fields are missing
+        const val FALLBACK_LIMIT = 100L
+
+        // Highest code point, closing the range of a prefix query
+        private const val PREFIX_END = "\uf8ff"
     }
-}
\ No newline at end of file
+}
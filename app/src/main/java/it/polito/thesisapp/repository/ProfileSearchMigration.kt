@@ -0,0 +1,89 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.SetOptions
+import it.polito.thesisapp.model.Profile
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.tasks.await
+
+/**
+ * One-shot migration that backfills the normalized search fields of profile documents,
+ * so that they can be found by [ProfileRepository.searchProfiles].
+ *
+ * It reads every profile and writes other users' documents, so it is an admin routine,
+ * like [AssignedMembersMigration], and is never run by the app itself.
+ * Once every profile is migrated it clears the legacy profiles flag of the profile search
+ * config, which stops [ProfileRepository] from falling back to in-memory filtering.
+ * Profiles whose search fields are already up to date are left untouched,
+ * so the migration can be run again safely, e.g. after names were edited in the console.
+ *
+ * To run it against the Firestore emulator, pass an instance on which
+ * [FirebaseFirestore.useEmulator] has been called, e.g. with [connectToEmulator].
+ *
+ * @property db Firestore instance to migrate
+ */
+class ProfileSearchMigration(
+    private val db: FirebaseFirestore = FirebaseFirestore.getInstance()
+) {
+
+    /**
+     * Runs the migration.
+     *
+     * @param batchSize Maximum number of updates committed in a single batch
+     * @return Number of profile documents that were updated
+     */
+    suspend fun run(batchSize: Int = MAX_BATCH_SIZE): Int {
+        require(batchSize in 1..MAX_BATCH_SIZE) { "batchSize must be in 1..$MAX_BATCH_SIZE" }
+
+        val updates = db.collection(Constants.FirestoreCollections.PROFILES)
+            .get()
+            .await()
+            .documents
+            .mapNotNull { doc ->
+                val fields = Profile.searchFields(
+                    doc.getString(Constants.FirestoreFields.Profile.FIRST_NAME) ?: "",
+                    doc.getString(Constants.FirestoreFields.Profile.LAST_NAME) ?: ""
+                )
+                val upToDate = fields.all { (field, value) -> doc.getString(field) == value }
+                if (upToDate) null else doc.reference to fields
+            }
+
+        updates.chunked(batchSize).forEach { chunk ->
+            val batch = db.batch()
+            chunk.forEach { (ref, fields) -> batch.update(ref, fields) }
+            batch.commit().await()
+        }
+
+        db.collection(Constants.FirestoreCollections.CONFIG)
+            .document(Constants.FirestoreConfigDocuments.PROFILE_SEARCH)
+            .set(
+                mapOf(Constants.FirestoreFields.ProfileSearchConfig.LEGACY_PROFILES to false),
+                SetOptions.merge()
+            )
+            .await()
+
+        return updates.size
+    }
+
+    companion object {
+        // Maximum number of writes allowed by Firestore in a single batch
+        const val MAX_BATCH_SIZE = TeamRepository.MAX_BATCH_WRITES
+
+        /**
+         * Creates a migration connected to the Firestore emulator.
+         * Must be called before the default Firestore instance is used for anything else.
+         *
+         * @param host Host of the Firestore emulator
+         * @param port Port of the Firestore emulator
+         * @return Migration running against the emulator
+         */
+        fun connectToEmulator(
+            host: String = Constants.Emulator.HOST,
+            port: Int = Constants.Emulator.FIRESTORE_PORT
+        ): ProfileSearchMigration {
+            val db = FirebaseFirestore.getInstance()
+            db.useEmulator(host, port)
+            return ProfileSearchMigration(db)
+        }
+    }
+}
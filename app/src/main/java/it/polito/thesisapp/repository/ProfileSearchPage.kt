@@ -0,0 +1,23 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.DocumentSnapshot
+import it.polito.thesisapp.model.Profile
+
+/**
+ * A page of profile search results.
+ *
+ * @property query Normalized query the page was searched with
+ * @property profiles Profiles of the page, sorted by name
+ * @property cursors Last document read by each search query that may have more results
+ */
+class ProfileSearchPage internal constructor(
+    val query: String,
+    val profiles: List<Profile>,
+    internal val cursors: Map<String, DocumentSnapshot>
+) {
+    /**
+     * Whether another page can be requested.
+     */
+    val hasMore: Boolean
+        get() = cursors.isNotEmpty()
+}
@@ -0,0 +1,160 @@
+package it.polito.thesisapp.repository
+
+import android.util.Log
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.shareIn
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.plus
+
+/**
+ * Keyed cache of hot flows shared by all their collectors.
+ *
+ * The upstream flow of a key is started by its first subscriber and stopped [lingerMillis]
+ * after its last subscriber leaves, so screens navigating between each other reuse the same
+ * live subscription. The last value is replayed to new subscribers. A key left without
+ * subscribers for [lingerMillis] is dropped, and an upstream error is rethrown to the
+ * current subscribers before the key is evicted.
+ *
+ * @property scope Scope in which the shared flows run
+ * @property lingerMillis Time the upstream is kept alive after the last subscriber leaves
+ */
+class SharedFlowCache<T>(
+    private val scope: CoroutineScope,
+    private val lingerMillis: Long
+) {
+    /**
+     * A shared flow and its subscribers.
+     *
+     * @property job Parent of the sharing coroutine, cancelled when the entry is dropped
+     * @property shared Values of the upstream, or the error that ended it
+     */
+    private class Entry<T>(val job: Job, val shared: SharedFlow<Result<T>>) {
+        // Collectors currently subscribed to the entry
+        var subscribers = 0
+
+        // Drops the entry once the linger has passed without subscribers
+        var release: Job? = null
+    }
+
+    // Live and lingering entries, keyed by flow key
+    private val entries = mutableMapOf<String, Entry<T>>()
+
+    /**
+     * Returns the number of keys whose flow is cached, live or lingering.
+     */
+    val size: Int
+        get() = synchronized(this) { entries.size }
+
+    /**
+     * Returns the shared flow of a key, creating it if needed.
+     * If the upstream fails, the error is rethrown to every current collector.
+     *
+     * @param key Key of the flow
+     * @param create Creates the upstream flow when the key is not cached
+     * @return Flow sharing the upstream of the key
+     */
+    fun get(key: String, create: () -> Flow<T>): Flow<T> = flow {
+        val entry = acquire(key, create)
+        try {
+            emitAll(entry.shared.map { it.getOrThrow() })
+        } finally {
+            release(key, entry)
+        }
+    }
+
+    /**
+     * Returns the last value of a key, if its flow is cached and has emitted.
+     *
+     * @param key Key of the flow
+     * @return Last value, or null if none is available
+     */
+    fun cached(key: String): T? = synchronized(this) {
+        entries[key]?.shared?.replayCache?.firstOrNull()?.getOrNull()
+    }
+
+    /**
+     * Returns the number of collectors currently subscribed to a key.
+     *
+     * @param key Key of the flow
+     * @return Number of subscribers
+     */
+    fun subscriberCount(key: String): Int = synchronized(this) {
+        entries[key]?.subscribers ?: 0
+    }
+
+    /**
+     * Subscribes to the entry of a key, creating it if needed.
+     *
+     * @param key Key of the flow
+     * @param create Creates the upstream flow when the key is not cached
+     * @return The entry
+     */
+    private fun acquire(key: String, create: () -> Flow<T>): Entry<T> = synchronized(this) {
+        val entry = entries.getOrPut(key) { share(key, create()) }
+        entry.release?.cancel()
+        entry.release = null
+        entry.subscribers++
+        entry
+    }
+
+    /**
+     * Unsubscribes from an entry. Once it has had no subscribers for [lingerMillis],
+     * the entry is dropped and its sharing coroutine cancelled.
+     *
+     * @param key Key of the flow
+     * @param entry The entry
+     */
+    private fun release(key: String, entry: Entry<T>) = synchronized(this) {
+        entry.subscribers--
+        if (entry.subscribers > 0) {
+            return@synchronized
+        }
+        entry.release = scope.launch {
+            delay(lingerMillis)
+            synchronized(this@SharedFlowCache) {
+                if (entry.subscribers == 0) {
+                    entries.remove(key, entry)
+                    entry.job.cancel()
+                }
+            }
+        }
+    }
+
+    /**
+     * Shares an upstream flow in a child of [scope].
+     * If the upstream fails, the error is emitted to the current subscribers and the key
+     * is evicted, so that the next subscriber starts a new upstream.
+     *
+     * @param key Key of the flow
+     * @param upstream Flow to share
+     * @return The entry sharing the upstream
+     */
+    private fun share(key: String, upstream: Flow<T>): Entry<T> {
+        val job = SupervisorJob(scope.coroutineContext[Job])
+        lateinit var entry: Entry<T>
+        val shared = upstream
+            .map { Result.success(it) }
+            .catch { e ->
+                Log.e(TAG, "Shared flow $key failed", e)
+                synchronized(this@SharedFlowCache) { entries.remove(key, entry) }
+                emit(Result.failure(e))
+            }
+            .shareIn(scope + job, SharingStarted.WhileSubscribed(lingerMillis), replay = 1)
+        entry = Entry(job, shared)
+        return entry
+    }
+
+    companion object {
+        private const val TAG = "SharedFlowCache"
+    }
+}
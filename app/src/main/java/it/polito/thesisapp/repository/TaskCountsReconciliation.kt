@@ -0,0 +1,72 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.AggregateSource
+import com.google.firebase.firestore.FirebaseFirestore
+import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.tasks.await
+
+/**
+ * Job that recomputes the task counters of team documents with `count()` aggregation queries,
+ * fixing counters that drifted, e.g. because tasks were edited outside the app, and initializing
+ * the counters of teams created before they were introduced.
+ *
+ * Each count is billed as one read per 1000 counted tasks, instead of one read per task.
+ * Status changes landing between the counts and the update of a team are overwritten,
+ * so the job is best run when the team is not being edited.
+ * [TeamRepository] reconciles each team whose counters are missing or partial the first time
+ * it is loaded, while [run] reconciles every team at once, e.g. after a bulk import.
+ *
+ * @property db Firestore instance to reconcile
+ */
+class TaskCountsReconciliation(
+    private val db: FirebaseFirestore = FirebaseFirestore.getInstance()
+) {
+
+    /**
+     * Recomputes the task counters of every team.
+     *
+     * @return Number of teams whose counters were updated
+     */
+    suspend fun run(): Int {
+        val teamIds = db.collection(Constants.FirestoreCollections.TEAMS)
+            .get()
+            .await()
+            .documents
+            .map { it.id }
+
+        return teamIds.count { reconcile(it) }
+    }
+
+    /**
+     * Recomputes the task counters of a team, writing them only if they changed.
+     *
+     * @param teamId ID of the team
+     * @return True if the counters were updated
+     */
+    suspend fun reconcile(teamId: String): Boolean = coroutineScope {
+        val teamRef = db.collection(Constants.FirestoreCollections.TEAMS).document(teamId)
+        val tasksCollection = teamRef.collection(Constants.FirestoreCollections.TEAM_TASKS)
+
+        val storedCounts = async { teamRef.get().await().get(Constants.FirestoreFields.Team.TASK_COUNTS) }
+        val counts = TaskStatus.entries.map { status ->
+            async {
+                status.name to tasksCollection
+                    .whereEqualTo(Constants.FirestoreFields.Task.STATUS, status.name)
+                    .count()
+                    .get(AggregateSource.SERVER)
+                    .await()
+                    .count
+            }
+        }.awaitAll().toMap()
+
+        if (storedCounts.await() == counts) {
+            return@coroutineScope false
+        }
+        teamRef.update(Constants.FirestoreFields.Team.TASK_COUNTS, counts).await()
+        true
+    }
+}
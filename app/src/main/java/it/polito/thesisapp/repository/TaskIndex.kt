@@ -0,0 +1,169 @@
+package it.polito.thesisapp.repository
+
+import it.polito.thesisapp.database.TaskOrder
+import it.polito.thesisapp.model.Task
+import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.utils.NameCollation
+import java.text.CollationKey
+import java.util.TreeSet
+
+/**
+ * In-memory index of the tasks of a team, keeping one ordered view per [TaskOrder].
+ *
+ * Each view is a balanced search tree, so adding, updating or removing a task costs
+ * O(log n) per view instead of a full re-sort of the list. Filtering by status is applied
+ * while reading a view, and the list read is cached until the next change, so reading the
+ * same view again returns the same instance.
+ *
+ * Names are ordered by the rules of the locale: each task is stored with the collation key
+ * of its name, which is only computed again when the name changes.
+ *
+ * Must be used from a single thread.
+ *
+ * @property nameCollation Collation the name keys are computed with
+ */
+class TaskIndex(
+    private val nameCollation: NameCollation = NameCollation()
+) {
+    /**
+     * A task stored with the collation key of its name.
+     *
+     * @property task The task
+     * @property nameKey Collation key of the name of the task
+     */
+    private class Entry(val task: Task, val nameKey: CollationKey)
+
+    private val entriesById = HashMap<String, Entry>()
+
+    /**
+     * Number of comparisons between tasks made by the views so far.
+     */
+    var comparisons = 0L
+        private set
+
+    // Tasks ordered by each sort order, ties broken by ID so that distinct tasks never compare equal
+    private val views: Map<TaskOrder, TreeSet<Entry>> =
+        TaskOrder.entries.associateWith { order -> TreeSet(counting(comparatorOf(order))) }
+
+    // Lists read since the last change, by order and statuses
+    private val cachedViews = HashMap<Pair<TaskOrder, Set<TaskStatus>>, List<Task>>()
+
+    /**
+     * Number of tasks in the index.
+     */
+    val size: Int
+        get() = entriesById.size
+
+    /**
+     * Returns the current version of a task.
+     *
+     * @param taskId ID of the task
+     * @return The task, or null if it is not in the index
+     */
+    operator fun get(taskId: String): Task? = entriesById[taskId]?.task
+
+    /**
+     * Adds a task, or replaces the task with the same ID.
+     *
+     * @param task Task to store
+     * @return True if the index changed
+     */
+    fun upsert(task: Task): Boolean {
+        val previous = entriesById[task.id]
+        if (previous != null && (previous.task === task || previous.task == task)) {
+            return false
+        }
+        previous?.let { old -> views.values.forEach { it.remove(old) } }
+        val nameKey = previous?.nameKey?.takeIf { previous.task.name == task.name }
+            ?: nameCollation.keyOf(task.name)
+        val entry = Entry(task, nameKey)
+        entriesById[task.id] = entry
+        views.values.forEach { it.add(entry) }
+        cachedViews.clear()
+        return true
+    }
+
+    /**
+     * Removes a task.
+     *
+     * @param taskId ID of the task
+     * @return True if the task was in the index
+     */
+    fun remove(taskId: String): Boolean {
+        val previous = entriesById.remove(taskId) ?: return false
+        views.values.forEach { it.remove(previous) }
+        cachedViews.clear()
+        return true
+    }
+
+    /**
+     * Makes the index hold exactly the given tasks, only touching the ones that changed.
+     * Unchanged tasks are recognized by identity first, so lists that reuse the instances
+     * of unchanged tasks, like the ones of [TaskStore], are diffed cheaply.
+     *
+     * @param tasks All the current tasks
+     * @return True if the index changed
+     */
+    fun replaceAll(tasks: Collection<Task>): Boolean {
+        var changed = false
+        val currentIds = HashSet<String>(tasks.size * 2)
+        tasks.forEach { task ->
+            currentIds.add(task.id)
+            if (upsert(task)) {
+                changed = true
+            }
+        }
+        if (currentIds.size < entriesById.size) {
+            entriesById.keys.filter { it !in currentIds }.forEach { taskId ->
+                remove(taskId)
+                changed = true
+            }
+        }
+        return changed
+    }
+
+    /**
+     * Returns the tasks with the given statuses, in the given order.
+     *
+     * @param order Sort order of the tasks
+     * @param statuses Statuses of the tasks to include
+     * @return The ordered tasks, the same instance until the index changes
+     */
+    fun view(order: TaskOrder, statuses: Set<TaskStatus> = ALL_STATUSES): List<Task> =
+        cachedViews.getOrPut(order to statuses) {
+            val tree = views.getValue(order)
+            if (statuses.containsAll(ALL_STATUSES)) {
+                tree.map { it.task }
+            } else {
+                tree.mapNotNull { entry -> entry.task.takeIf { it.status in statuses } }
+            }
+        }
+
+    /**
+     * Wraps a comparator so that its calls are counted in [comparisons].
+     *
+     * @param comparator Comparator of a sort order
+     * @return The counting comparator
+     */
+    private fun counting(comparator: Comparator<Entry>): Comparator<Entry> =
+        Comparator { a, b ->
+            comparisons++
+            comparator.compare(a, b)
+        }
+
+    companion object {
+        private val ALL_STATUSES = TaskStatus.entries.toSet()
+
+        /**
+         * Returns the comparator of a sort order, ties being broken by task ID.
+         *
+         * @param order Sort order of the tasks
+         * @return The comparator
+         */
+        private fun comparatorOf(order: TaskOrder): Comparator<Entry> = when (order) {
+            TaskOrder.CREATION_DATE_DESC -> compareByDescending<Entry> { it.task.creationDate }.thenBy { it.task.id }
+            TaskOrder.NAME_ASC -> compareBy<Entry> { it.nameKey }.thenBy { it.task.id }
+            TaskOrder.NAME_DESC -> compareByDescending<Entry> { it.nameKey }.thenBy { it.task.id }
+        }
+    }
+}
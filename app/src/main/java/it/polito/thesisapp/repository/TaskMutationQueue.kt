@@ -0,0 +1,414 @@
+package it.polito.thesisapp.repository
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.net.Network
+import android.net.NetworkCapabilities
+import android.os.SystemClock
+import android.util.Log
+import com.google.firebase.firestore.FieldValue
+import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.FirebaseFirestoreException
+import it.polito.thesisapp.database.PendingMutationDao
+import it.polito.thesisapp.database.PendingMutationEntity
+import it.polito.thesisapp.database.TaskDao
+import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.tasks.await
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Durable queue of task field updates waiting to be written to Firestore.
+ *
+ * Updates are stored in their own Room database before being written, never recreated on
+ * schema changes, so they survive process death and app updates and are flushed on the next start. Pending updates of the same task field are coalesced into the
+ * last value. The queue is flushed with transactions shortly after an update is enqueued
+ * and whenever connectivity returns, while nothing is written as long as the device is offline.
+ * A flush that finds Firestore unavailable is retried with an exponential backoff.
+ * Callers get control back as soon as an update is queued, with a result completed once it
+ * has been written.
+ * Status updates keep the task counters of the team document in sync in the same transaction.
+ * A status update is applied to the local mirror as soon as it is enqueued, and the lists read
+ * from Firestore can overlay [pendingStatuses], so that it shows while offline.
+ *
+ * @property dao DAO of the pending mutations
+ * @property taskDao DAO of the mirrored tasks, updated when a status change is enqueued
+ * @property db Firestore instance the mutations are written to
+ * @property scope Scope in which the queue is flushed
+ * @property flushDelayMillis Time waited after a flush request, so that rapid updates share a flush
+ */
+class TaskMutationQueue(
+    private val dao: PendingMutationDao,
+    private val taskDao: TaskDao,
+    private val db: FirebaseFirestore = FirebaseFirestore.getInstance(),
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default),
+    private val flushDelayMillis: Long = DEFAULT_FLUSH_DELAY_MILLIS
+) {
+    private val sequence = AtomicLong(System.currentTimeMillis())
+    private val flushRequests = Channel<Unit>(Channel.CONFLATED)
+    private val waiters = mutableMapOf<String, MutableList<Waiter>>()
+
+    // Delay before retrying the next flush that finds Firestore unavailable
+    private var retryDelayMillis = INITIAL_RETRY_DELAY_MILLIS
+
+    // Flush retry scheduled after Firestore was found unavailable
+    private var retryJob: Job? = null
+
+    @Volatile
+    private var isOnline = true
+
+    /**
+     * A caller waiting for a mutation to be written.
+     *
+     * @property sequence Sequence of the awaited mutation
+     * @property result Completed when a mutation with at least that sequence is written
+     */
+    private class Waiter(val sequence: Long, val result: CompletableDeferred<Unit>)
+
+    /**
+     * Number of mutations waiting to be written.
+     */
+    val queueDepth: Flow<Int> = dao.observeCount()
+
+    private val _lastFlushLatencyMillis = MutableStateFlow<Long?>(null)
+
+    /**
+     * Duration of the last flush, from the first write to the last server acknowledgement.
+     */
+    val lastFlushLatencyMillis: StateFlow<Long?> = _lastFlushLatencyMillis
+
+    init {
+        scope.launch {
+            for (request in flushRequests) {
+                delay(flushDelayMillis)
+                if (isOnline) {
+                    if (flush()) {
+                        retryDelayMillis = INITIAL_RETRY_DELAY_MILLIS
+                    } else {
+                        scheduleRetry()
+                    }
+                }
+            }
+        }
+        // Flush what was left pending before the process died
+        flushRequests.trySend(Unit)
+    }
+
+    /**
+     * Enqueues a task status update, returning as soon as it is stored and applied to the
+     * local mirror, without waiting for Firestore.
+     * If a later update of the same status is written instead, this one is considered written too.
+     *
+     * @param teamId ID of the team
+     * @param taskId ID of the task
+     * @param status New status of the task
+     * @return Completed once the update has been written, or failed if Firestore rejected it
+     */
+    suspend fun updateTaskStatus(teamId: String, taskId: String, status: TaskStatus): Deferred<Unit> =
+        enqueue(teamId, taskId, Constants.FirestoreFields.Task.STATUS, status.name)
+
+    /**
+     * Observes the statuses enqueued for the tasks of a team and not written yet.
+     *
+     * @param teamId ID of the team
+     * @return Flow emitting the pending status of each task, keyed by task ID
+     */
+    fun pendingStatuses(teamId: String): Flow<Map<String, TaskStatus>> =
+        dao.observeTeamMutations(teamId, Constants.FirestoreFields.Task.STATUS)
+            .map { mutations -> mutations.associate { it.taskId to TaskStatus.fromString(it.value) } }
+            .distinctUntilChanged()
+
+    /**
+     * Starts watching the connectivity of the device, flushing the queue when it returns.
+     *
+     * @param context Context used to reach the connectivity service
+     */
+    fun watchConnectivity(context: Context) {
+        val connectivityManager = context.getSystemService(ConnectivityManager::class.java)
+        isOnline = connectivityManager.getNetworkCapabilities(connectivityManager.activeNetwork)
+            ?.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET) == true
+
+        connectivityManager.registerDefaultNetworkCallback(object : ConnectivityManager.NetworkCallback() {
+            override fun onAvailable(network: Network) {
+                isOnline = true
+                flushRequests.trySend(Unit)
+            }
+
+            override fun onLost(network: Network) {
+                isOnline = false
+            }
+        })
+    }
+
+    /**
+     * Stores a mutation, replacing the pending one of the same field, and requests a flush.
+     * Status changes are applied to the local mirror right away.
+     *
+     * @param teamId ID of the team
+     * @param taskId ID of the task
+     * @param field Name of the updated field
+     * @param value New value of the field
+     * @return Completed when the mutation has been written
+     */
+    private suspend fun enqueue(
+        teamId: String,
+        taskId: String,
+        field: String,
+        value: String
+    ): CompletableDeferred<Unit> {
+        val mutation = PendingMutationEntity(teamId, taskId, field, value, sequence.incrementAndGet())
+        val result = CompletableDeferred<Unit>()
+        synchronized(waiters) {
+            waiters.getOrPut(mutation.key) { mutableListOf() }.add(Waiter(mutation.sequence, result))
+        }
+        dao.upsert(mutation)
+        if (field == Constants.FirestoreFields.Task.STATUS) {
+            taskDao.updateStatus(teamId, taskId, value)
+        }
+        flushRequests.trySend(Unit)
+        return result
+    }
+
+    /**
+     * Requests a flush after the current retry delay, then doubles the delay up to
+     * [MAX_RETRY_DELAY_MILLIS]. Must be called from the flush loop.
+     */
+    private fun scheduleRetry() {
+        val delayMillis = retryDelayMillis
+        retryDelayMillis = (retryDelayMillis * 2).coerceAtMost(MAX_RETRY_DELAY_MILLIS)
+        retryJob?.cancel()
+        retryJob = scope.launch {
+            delay(delayMillis)
+            flushRequests.trySend(Unit)
+        }
+    }
+
+    /**
+     * Writes all the pending mutations, one transaction per chunk.
+     * If Firestore is unavailable the mutations stay queued for a retry. If a chunk is
+     * rejected, its mutations are written one by one so that only the rejected ones are dropped.
+     *
+     * @return False if Firestore was unavailable and the flush must be retried
+     */
+    private suspend fun flush(): Boolean {
+        val pending = dao.getAll()
+        if (pending.isEmpty()) {
+            return true
+        }
+        val startTime = SystemClock.elapsedRealtime()
+
+        for (chunk in pending.chunked(MAX_MUTATIONS_PER_TRANSACTION)) {
+            try {
+                val missing = write(chunk)
+                chunk.forEach { mutation ->
+                    if (mutation in missing) {
+                        onRejected(mutation, notFound(mutation))
+                    } else {
+                        onWritten(mutation)
+                    }
+                }
+            } catch (e: Exception) {
+                if (e.isUnavailable()) {
+                    Log.w(TAG, "Firestore unavailable, keeping ${pending.size} mutations queued", e)
+                    return false
+                }
+                Log.w(TAG, "Transaction of ${chunk.size} mutations rejected, retrying one by one", e)
+                chunk.forEach { mutation ->
+                    try {
+                        if (write(listOf(mutation)).isEmpty()) {
+                            onWritten(mutation)
+                        } else {
+                            onRejected(mutation, notFound(mutation))
+                        }
+                    } catch (retryError: Exception) {
+                        if (retryError.isUnavailable()) {
+                            return false
+                        }
+                        Log.e(TAG, "Dropping rejected mutation ${mutation.key}", retryError)
+                        onRejected(mutation, retryError)
+                    }
+                }
+            }
+        }
+
+        _lastFlushLatencyMillis.value = SystemClock.elapsedRealtime() - startTime
+        return true
+    }
+
+    /**
+     * Writes a chunk of mutations in a single transaction.
+     * Status changes also move the task counters of their teams, so the current status of
+     * every task is read first and the counters of each team are updated with a single write.
+     *
+     * @param mutations Mutations to write
+     * @return Mutations that were not written because their task does not exist
+     */
+    private suspend fun write(mutations: List<PendingMutationEntity>): Set<PendingMutationEntity> =
+        db.runTransaction { transaction ->
+            val snapshots = mutations.map { transaction.get(it.reference) }
+            val missing = mutableSetOf<PendingMutationEntity>()
+            val countDeltas = mutableMapOf<String, MutableMap<String, Long>>()
+
+            mutations.zip(snapshots).forEach { (mutation, snapshot) ->
+                if (!snapshot.exists()) {
+                    missing.add(mutation)
+                    return@forEach
+                }
+                if (mutation.field == Constants.FirestoreFields.Task.STATUS) {
+                    val oldStatus = TaskStatus.fromString(snapshot.getString(mutation.field))
+                    val newStatus = TaskStatus.fromString(mutation.value)
+                    if (oldStatus != newStatus) {
+                        val deltas = countDeltas.getOrPut(mutation.teamId) { mutableMapOf() }
+                        deltas.merge(TeamRepository.taskCountField(oldStatus), -1L, Long::plus)
+                        deltas.merge(TeamRepository.taskCountField(newStatus), 1L, Long::plus)
+                    }
+                }
+                transaction.update(mutation.reference, mutation.field, mutation.value)
+            }
+
+            countDeltas.forEach { (teamId, deltas) ->
+                val increments = deltas.filterValues { it != 0L }
+                    .mapValues { (_, delta) -> FieldValue.increment(delta) }
+                if (increments.isNotEmpty()) {
+                    transaction.update(
+                        db.collection(Constants.FirestoreCollections.TEAMS).document(teamId),
+                        increments
+                    )
+                }
+            }
+            missing.toSet()
+        }.await()
+
+    /**
+     * Removes a written mutation from the queue and releases its waiters.
+     *
+     * @param mutation The written mutation
+     */
+    private suspend fun onWritten(mutation: PendingMutationEntity) {
+        dao.delete(mutation.teamId, mutation.taskId, mutation.field, mutation.sequence)
+        releaseWaiters(mutation) { it.complete(Unit) }
+    }
+
+    /**
+     * Removes a rejected mutation from the queue and fails its waiters.
+     * A rejected status change was already applied to the local mirror, so the task is read
+     * again and its actual status restored.
+     *
+     * @param mutation The rejected mutation
+     * @param error Error returned by Firestore
+     */
+    private suspend fun onRejected(mutation: PendingMutationEntity, error: Exception) {
+        dao.delete(mutation.teamId, mutation.taskId, mutation.field, mutation.sequence)
+        releaseWaiters(mutation) { it.completeExceptionally(error) }
+        if (mutation.field == Constants.FirestoreFields.Task.STATUS) {
+            restoreStatus(mutation)
+        }
+    }
+
+    /**
+     * Writes the status of a task stored in Firestore back into the local mirror.
+     *
+     * @param mutation The rejected status mutation
+     */
+    private suspend fun restoreStatus(mutation: PendingMutationEntity) {
+        try {
+            val snapshot = mutation.reference.get().await()
+            if (snapshot.exists()) {
+                taskDao.updateStatus(
+                    mutation.teamId,
+                    mutation.taskId,
+                    TaskStatus.fromString(snapshot.getString(mutation.field)).name
+                )
+            } else {
+                taskDao.delete(mutation.teamId, mutation.taskId)
+            }
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to restore the status of task ${mutation.taskId}", e)
+        }
+    }
+
+    /**
+     * Creates the error reported for a mutation whose task does not exist.
+     *
+     * @param mutation The mutation
+     * @return A NOT_FOUND exception
+     */
+    private fun notFound(mutation: PendingMutationEntity) = FirebaseFirestoreException(
+        "Task ${mutation.taskId} does not exist",
+        FirebaseFirestoreException.Code.NOT_FOUND
+    )
+
+    /**
+     * Releases the waiters of a mutation and of the earlier ones it replaced.
+     *
+     * @param mutation The mutation that left the queue
+     * @param release Action completing the result of a waiter
+     */
+    private fun releaseWaiters(
+        mutation: PendingMutationEntity,
+        release: (CompletableDeferred<Unit>) -> Unit
+    ) {
+        val released = synchronized(waiters) {
+            val keyWaiters = waiters[mutation.key] ?: return
+            val done = keyWaiters.filter { it.sequence <= mutation.sequence }
+            keyWaiters.removeAll(done)
+            if (keyWaiters.isEmpty()) {
+                waiters.remove(mutation.key)
+            }
+            done
+        }
+        released.forEach { release(it.result) }
+    }
+
+    /**
+     * Key identifying the task field a mutation updates.
+     */
+    private val PendingMutationEntity.key: String
+        get() = "$teamId/$taskId/$field"
+
+    /**
+     * Reference of the task document a mutation updates.
+     */
+    private val PendingMutationEntity.reference
+        get() = db.collection(Constants.FirestoreCollections.TEAMS)
+            .document(teamId)
+            .collection(Constants.FirestoreCollections.TEAM_TASKS)
+            .document(taskId)
+
+    /**
+     * Whether an error means that Firestore could not be reached and the write can be retried.
+     */
+    private fun Exception.isUnavailable(): Boolean =
+        (this as? FirebaseFirestoreException)?.code == FirebaseFirestoreException.Code.UNAVAILABLE
+
+    companion object {
+        private const val TAG = "TaskMutationQueue"
+
+        // Maximum number of mutations written in one transaction: each one can take a task write
+        // and a team counters write, within the limit of writes of a transaction
+        private const val MAX_MUTATIONS_PER_TRANSACTION = TeamRepository.MAX_BATCH_WRITES / 2
+
+        // Default time waited before flushing, coalescing the updates enqueued meanwhile
+        const val DEFAULT_FLUSH_DELAY_MILLIS = 500L
+
+        // Delay before the first retry of a flush that found Firestore unavailable
+        const val INITIAL_RETRY_DELAY_MILLIS = 1_000L
+
+        // Maximum delay between two retries of a flush
+        private const val MAX_RETRY_DELAY_MILLIS = 60_000L
+    }
+}
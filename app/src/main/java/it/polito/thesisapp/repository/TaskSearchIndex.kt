@@ -0,0 +1,396 @@
+package it.polito.thesisapp.repository
+
+import it.polito.thesisapp.model.Task
+import it.polito.thesisapp.utils.SearchText
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import java.util.PriorityQueue
+import java.util.TreeMap
+
+/**
+ * In-memory full-text index of the names and descriptions of the tasks of every team.
+ *
+ * The index is inverted: each term maps to the tasks containing it, and terms are kept
+ * sorted so that all the terms starting with a prefix are a single range of the map.
+ * Adding, updating or removing a task only touches the postings of its own terms, so the
+ * index is kept up to date from the task changes of each team instead of being rebuilt.
+ *
+ * Queries match every term as a prefix and only return the tasks matching all of them.
+ * Terms found in the name weigh more than terms found in the description, and whole
+ * words weigh more than prefixes. Text is normalized like profile searches, so case and
+ * accents are ignored.
+ *
+ * Safe to use from multiple threads.
+ */
+class TaskSearchIndex {
+
+    /**
+     * An indexed task.
+     *
+     * @property id Internal ID of the document, used in the postings
+     * @property teamId ID of the team of the task
+     * @property task The task
+     * @property terms Weight of each term of the task
+     */
+    private class Document(
+        val id: Int,
+        val teamId: String,
+        val task: Task,
+        val terms: Map<String, Int>
+    )
+
+    /**
+     * A matching document and its score.
+     *
+     * @property document The matching document
+     * @property score Score of the document for the query
+     */
+    private class Hit(val document: Document, val score: Int)
+
+    // Internal document IDs, keyed by team ID and task ID
+    private val documentIds = HashMap<String, Int>()
+
+    // Indexed documents, at the index of their internal ID, null for the freed IDs
+    private val documents = ArrayList<Document?>()
+
+    // Internal IDs freed by removed documents, reused by the next added ones
+    private val freeDocumentIds = ArrayDeque<Int>()
+
+    // Best score of each candidate document of the running search, at the index of its ID
+    private var candidateScores = IntArray(0)
+
+    // IDs of the candidate documents of the running search, in the order they were found
+    private var candidateIds = IntArray(0)
+
+    // Internal IDs of the documents of each team
+    private val teamDocuments = HashMap<String, MutableSet<Int>>()
+
+    // Weight of each term in each document, terms sorted so that prefixes are ranges
+    private val postings = TreeMap<String, HashMap<Int, Int>>()
+
+    // Incremented on every change of the index
+    private val _version = MutableStateFlow(0L)
+
+    /**
+     * Version of the index, incremented on every change, so that queries can be run again.
+     */
+    val version: StateFlow<Long> = _version
+
+    /**
+     * Number of tasks in the index.
+     */
+    val size: Int
+        get() = synchronized(this) { documentIds.size }
+
+    /**
+     * Number of postings read to gather the candidates of the searches so far.
+     */
+    var postingsScanned = 0L
+        private set
+
+    /**
+     * Number of candidates checked against the other query terms and ranked by the searches so far.
+     */
+    var candidatesScored = 0L
+        private set
+
+    /**
+     * Adds a task of a team, or replaces the task with the same ID.
+     * Only the postings of the terms that changed are updated.
+     *
+     * @param teamId ID of the team of the task
+     * @param task Task to index
+     * @return True if the index changed
+     */
+    fun upsert(teamId: String, task: Task): Boolean = synchronized(this) {
+        val changed = upsertDocument(teamId, task)
+        if (changed) _version.value++
+        changed
+    }
+
+    /**
+     * Removes a task of a team.
+     *
+     * @param teamId ID of the team of the task
+     * @param taskId ID of the task
+     * @return True if the task was in the index
+     */
+    fun remove(teamId: String, taskId: String): Boolean = synchronized(this) {
+        val removed = removeDocument(teamId, taskId)
+        if (removed) _version.value++
+        removed
+    }
+
+    /**
+     * Makes the index hold exactly the given tasks for a team, only touching the ones that changed.
+     *
+     * @param teamId ID of the team
+     * @param tasks All the current tasks of the team
+     * @return True if the index changed
+     */
+    fun replaceTeam(teamId: String, tasks: Collection<Task>): Boolean = synchronized(this) {
+        var changed = false
+        val currentIds = HashSet<String>(tasks.size * 2)
+        tasks.forEach { task ->
+            currentIds.add(task.id)
+            if (upsertDocument(teamId, task)) {
+                changed = true
+            }
+        }
+        teamDocuments[teamId]
+            ?.mapNotNull { documents[it]?.task?.id }
+            ?.filter { it !in currentIds }
+            ?.forEach { taskId ->
+                removeDocument(teamId, taskId)
+                changed = true
+            }
+        if (changed) _version.value++
+        changed
+    }
+
+    /**
+     * Searches the tasks whose name or description contain every term of a query,
+     * each term being matched as a prefix of a word.
+     *
+     * @param query The text typed by the user
+     * @param teamIds Teams to search in, or null to search in all the indexed teams
+     * @param limit Maximum number of tasks returned
+     * @return The matching tasks grouped by team, teams ordered by their best match
+     */
+    fun search(query: String, teamIds: Set<String>? = null, limit: Int = DEFAULT_LIMIT): List<TaskSearchResult> {
+        val terms = tokenize(query).distinct()
+        if (terms.isEmpty() || limit <= 0) {
+            return emptyList()
+        }
+
+        val hits = synchronized(this) { topHits(terms, teamIds, limit) }
+        return hits
+            .groupBy({ it.document.teamId }, { it.document.task })
+            .map { (teamId, tasks) -> TaskSearchResult(teamId, tasks) }
+    }
+
+    /**
+     * Returns the best matches of all the query terms, best first.
+     * Candidates are taken from the postings of the most selective term, then each
+     * candidate is checked against the terms of its own document for the other terms.
+     * Candidate scores are gathered in arrays indexed by document ID rather than in a map,
+     * and for single term queries a candidate scoring below the worst kept hit is skipped
+     * right away, so short prefixes matching thousands of tasks stay cheap.
+     *
+     * @param terms The normalized query terms
+     * @param teamIds Teams to search in, or null to search in all the indexed teams
+     * @param limit Maximum number of hits returned
+     * @return The best hits, best first
+     */
+    private fun topHits(terms: List<String>, teamIds: Set<String>?, limit: Int): List<Hit> {
+        val ranges = terms.associateWith { term ->
+            postings.subMap(term, true, term + Char.MAX_VALUE, false)
+        }
+        val (firstTerm, firstRange) = ranges.minBy { (_, range) -> range.values.sumOf { it.size } }
+        val otherTerms = terms - firstTerm
+
+        if (candidateScores.size < documents.size) {
+            candidateScores = IntArray(documents.size)
+            candidateIds = IntArray(documents.size)
+        }
+        var candidateCount = 0
+        firstRange.forEach { (indexTerm, posting) ->
+            postingsScanned += posting.size
+            posting.forEach { (documentId, weight) ->
+                val score = termScore(firstTerm, indexTerm, weight)
+                val previous = candidateScores[documentId]
+                if (previous == 0) {
+                    candidateIds[candidateCount++] = documentId
+                }
+                if (score > previous) {
+                    candidateScores[documentId] = score
+                }
+            }
+        }
+
+        // Keeps the best hits, the worst one on top so that it is the one replaced
+        val best = PriorityQueue(limit, HIT_ORDER.reversed())
+        candidates@ for (i in 0 until candidateCount) {
+            val documentId = candidateIds[i]
+            val firstScore = candidateScores[documentId]
+            candidateScores[documentId] = 0
+            if (otherTerms.isEmpty() && best.size == limit && firstScore < best.peek().score) {
+                continue
+            }
+            val document = documents[documentId] ?: continue
+            if (teamIds != null && document.teamId !in teamIds) {
+                continue
+            }
+            candidatesScored++
+            var score = firstScore
+            for (term in otherTerms) {
+                val termScore = document.bestScore(term)
+                if (termScore == 0) {
+                    continue@candidates
+                }
+                score += termScore
+            }
+            if (best.size < limit) {
+                best.add(Hit(document, score))
+            } else if (score >= best.peek().score) {
+                val hit = Hit(document, score)
+                if (HIT_ORDER.compare(hit, best.peek()) < 0) {
+                    best.poll()
+                    best.add(hit)
+                }
+            }
+        }
+        return best.sortedWith(HIT_ORDER)
+    }
+
+    /**
+     * Returns the best score of a query term among the terms of a document.
+     *
+     * @param term The normalized query term
+     * @return The score, 0 if no term of the document starts with the query term
+     */
+    private fun Document.bestScore(term: String): Int {
+        var score = 0
+        terms.forEach { (indexTerm, weight) ->
+            if (indexTerm.startsWith(term)) {
+                score = maxOf(score, termScore(term, indexTerm, weight))
+            }
+        }
+        return score
+    }
+
+    /**
+     * Adds or replaces a document, without incrementing the version.
+     *
+     * @param teamId ID of the team of the task
+     * @param task Task to index
+     * @return True if the index changed
+     */
+    private fun upsertDocument(teamId: String, task: Task): Boolean {
+        val key = documentKey(teamId, task.id)
+        val previous = documentIds[key]?.let { documents[it] }
+        if (previous != null && (previous.task === task || previous.task == task)) {
+            return false
+        }
+
+        val terms = termsOf(task)
+        if (previous != null && previous.terms == terms) {
+            // Only fields that are not searched changed, the postings stay the same
+            documents[previous.id] = Document(previous.id, teamId, task, terms)
+            return true
+        }
+
+        previous?.let { removePostings(it) }
+        val id = previous?.id ?: freeDocumentIds.removeLastOrNull() ?: documents.size.also { documents.add(null) }
+        val document = Document(id, teamId, task, terms)
+        documentIds[key] = id
+        documents[id] = document
+        teamDocuments.getOrPut(teamId) { HashSet() }.add(id)
+        terms.forEach { (term, weight) ->
+            postings.getOrPut(term) { HashMap() }[id] = weight
+        }
+        return true
+    }
+
+    /**
+     * Removes a document, without incrementing the version.
+     *
+     * @param teamId ID of the team of the task
+     * @param taskId ID of the task
+     * @return True if the task was in the index
+     */
+    private fun removeDocument(teamId: String, taskId: String): Boolean {
+        val id = documentIds.remove(documentKey(teamId, taskId)) ?: return false
+        val document = documents[id] ?: return false
+        documents[id] = null
+        freeDocumentIds.addLast(id)
+        removePostings(document)
+        teamDocuments[teamId]?.let { ids ->
+            ids.remove(id)
+            if (ids.isEmpty()) teamDocuments.remove(teamId)
+        }
+        return true
+    }
+
+    /**
+     * Removes a document from the postings of its terms, dropping the terms left without tasks.
+     *
+     * @param document The document to remove
+     */
+    private fun removePostings(document: Document) {
+        document.terms.keys.forEach { term ->
+            postings[term]?.let { posting ->
+                posting.remove(document.id)
+                if (posting.isEmpty()) postings.remove(term)
+            }
+        }
+    }
+
+    companion object {
+        // Default maximum number of tasks returned by a search
+        const val DEFAULT_LIMIT = 50
+
+        // Weight of a word of the name of a task
+        private const val NAME_WEIGHT = 3
+
+        // Weight of a word of the description of a task
+        private const val DESCRIPTION_WEIGHT = 1
+
+        // Multiplier of the weight of a query term matching a whole word
+        private const val WHOLE_WORD_BONUS = 2
+
+        // Anything that is not a letter or a digit separates words
+        private val WORD_SEPARATOR = Regex("[^\\p{L}\\p{N}]+")
+
+        // Best score first, ties broken by name and then ID so that results are stable
+        private val HIT_ORDER = compareByDescending<Hit> { it.score }
+            .thenBy { it.document.task.name }
+            .thenBy { it.document.teamId }
+            .thenBy { it.document.task.id }
+
+        /**
+         * Splits a text into normalized words.
+         *
+         * @param text The text
+         * @return The words, lowercase and without accents
+         */
+        fun tokenize(text: String): List<String> =
+            SearchText.normalize(text)
+                .split(WORD_SEPARATOR)
+                .filter { it.isNotEmpty() }
+
+        /**
+         * Computes the weight of each term of a task: words of the name weigh more than
+         * words of the description, and repeated words add up.
+         *
+         * @param task The task
+         * @return The weight of each term
+         */
+        private fun termsOf(task: Task): Map<String, Int> {
+            val terms = HashMap<String, Int>()
+            tokenize(task.name).forEach { terms.merge(it, NAME_WEIGHT, Int::plus) }
+            tokenize(task.description).forEach { terms.merge(it, DESCRIPTION_WEIGHT, Int::plus) }
+            return terms
+        }
+
+        /**
+         * Scores a query term against a term of a task it is a prefix of.
+         *
+         * @param term The query term
+         * @param indexTerm The term of the task
+         * @param weight Weight of the term in the task
+         * @return The score
+         */
+        private fun termScore(term: String, indexTerm: String, weight: Int): Int =
+            if (indexTerm.length == term.length) weight * WHOLE_WORD_BONUS else weight
+
+        /**
+         * Returns the key of a task among the tasks of every team.
+         *
+         * @param teamId ID of the team
+         * @param taskId ID of the task
+         * @return The key
+         */
+        private fun documentKey(teamId: String, taskId: String): String = "$teamId/$taskId"
+    }
+}
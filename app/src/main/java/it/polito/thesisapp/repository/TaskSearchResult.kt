@@ -0,0 +1,14 @@
+package it.polito.thesisapp.repository
+
+import it.polito.thesisapp.model.Task
+
+/**
+ * Tasks of a team matching a search query.
+ *
+ * @property teamId ID of the team
+ * @property tasks Matching tasks of the team, best match first
+ */
+data class TaskSearchResult(
+    val teamId: String,
+    val tasks: List<Task>
+)
@@ -0,0 +1,136 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.DocumentChange
+import com.google.firebase.firestore.DocumentReference
+import it.polito.thesisapp.model.Task
+
+/**
+ * In-memory state of the tasks of a team, kept up to date by applying
+ * Firestore document changes instead of re-mapping every document on each snapshot.
+ *
+ * Unchanged tasks keep the same instance across updates, so downstream equality
+ * checks and Compose skipping only pay for what actually changed.
+ */
+class TaskStore {
+
+    /**
+     * A single change to a task document.
+     *
+     * @property type Kind of change reported by Firestore
+     * @property id ID of the task document
+     * @property data Document data, ignored for removals
+     */
+    data class Change(
+        val type: DocumentChange.Type,
+        val id: String,
+        val data: Map<String, Any> = emptyMap()
+    )
+
+    private val tasksMap = linkedMapOf<String, Task>()
+
+    // Assigned members read from the legacy subcollection, keyed by task ID
+    private val assignedMembersOverrides = mutableMapOf<String, List<DocumentReference>>()
+
+    private var cachedTasks: List<Task> = emptyList()
+    private var dirty = false
+
+    /**
+     * Number of task documents mapped with [Task.fromFirestore] so far.
+     */
+    var mappedDocuments = 0L
+        private set
+
+    /**
+     * Current tasks, in the order they were first added.
+     * The list is rebuilt only after a change, otherwise the same instance is returned.
+     */
+    val tasks: List<Task>
+        get() {
+            if (dirty) {
+                cachedTasks = tasksMap.values.toList()
+                dirty = false
+            }
+            return cachedTasks
+        }
+
+    /**
+     * Returns the current version of a task.
+     *
+     * @param taskId ID of the task
+     * @return The task, or null if it is not in the store
+     */
+    operator fun get(taskId: String): Task? = tasksMap[taskId]
+
+    /**
+     * Applies a set of document changes.
+     *
+     * @param changes Changes reported by a tasks query snapshot
+     * @return True if at least one task was added, modified or removed
+     */
+    fun apply(changes: List<Change>): Boolean {
+        var changed = false
+
+        changes.forEach { change ->
+            when (change.type) {
+                DocumentChange.Type.REMOVED -> {
+                    assignedMembersOverrides.remove(change.id)
+                    if (tasksMap.remove(change.id) != null) {
+                        dirty = true
+                        changed = true
+                    }
+                }
+
+                DocumentChange.Type.ADDED, DocumentChange.Type.MODIFIED -> {
+                    mappedDocuments++
+                    var task = Task.fromFirestore(change.id, change.data)
+                    assignedMembersOverrides[change.id]?.let {
+                        task = task.copy(assignedMembers = it)
+                    }
+                    if (put(task)) {
+                        changed = true
+                    }
+                }
+            }
+        }
+
+        return changed
+    }
+
+    /**
+     * Sets the assigned members of a task read from the legacy subcollection.
+     * They take precedence over the field of the task document until cleared.
+     *
+     * @param taskId ID of the task
+     * @param assignedMembers Assigned members of the task
+     * @return True if the task exists and was updated
+     */
+    fun setAssignedMembers(taskId: String, assignedMembers: List<DocumentReference>): Boolean {
+        assignedMembersOverrides[taskId] = assignedMembers
+        val task = tasksMap[taskId] ?: return false
+        return put(task.copy(assignedMembers = assignedMembers))
+    }
+
+    /**
+     * Stops overriding the assigned members of a task, e.g. once it has been migrated.
+     *
+     * @param taskId ID of the task
+     */
+    fun clearAssignedMembers(taskId: String) {
+        assignedMembersOverrides.remove(taskId)
+    }
+
+    /**
+     * Stores a task, keeping the existing instance if nothing changed.
+     *
+     * @param task Task to store
+     * @return True if the stored task changed
+     */
+    private fun put(task: Task): Boolean {
+        if (tasksMap[task.id] == task) {
+            return false
+        }
+        tasksMap[task.id] = task
+        dirty = true
+        return true
+    }
+}
@@ -1,52 +1,404 @@
 package it.polito.thesisapp.repository
 
+import android.util.Log
 import com.google.firebase.Timestamp
+import com.google.firebase.firestore.AggregateSource
+import com.google.firebase.firestore.DocumentChange
 import com.google.firebase.firestore.DocumentReference
 import com.google.firebase.firestore.DocumentSnapshot
 import com.google.firebase.firestore.FieldValue
 import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.Query
 import com.google.firebase.firestore.QuerySnapshot
+import com.google.firebase.firestore.WriteBatch
 import it.polito.thesisapp.model.Task
 import it.polito.thesisapp.model.TaskStatus
 import it.polito.thesisapp.model.Team
 import it.polito.thesisapp.model.TeamMember
+import it.polito.thesisapp.model.TeamSummary
 import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.channels.ProducerScope
 import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.tasks.await
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Repository class for managing team data.
+ *
+ * @property assignedMembersReadMode How the assigned members of a task are read
+ * @property scope Scope in which team flows shared between screens run
+ * @property teamFlowLingerMillis Time a shared team flow stays alive after its last subscriber leaves
+ * @property taskSearchIndex Search index kept up to date with the tasks of every team flow
+ * @property db Firestore instance the teams are read from and written to
  */
-class TeamRepository {
-    private val db = FirebaseFirestore.getInstance()
+class TeamRepository(
+    private val assignedMembersReadMode: AssignedMembersReadMode = AssignedMembersReadMode.DUAL,
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default),
+    private val teamFlowLingerMillis: Long = DEFAULT_LINGER_MILLIS,
+    private val taskSearchIndex: TaskSearchIndex = TaskSearchIndex(),
+    private val db: FirebaseFirestore = FirebaseFirestore.getInstance()
+) {
+
+    // Live team flows shared by all screens, keyed by team ID
+    private val teamFlows = SharedFlowCache<Team?>(scope, teamFlowLingerMillis)
+
+    // Live single task flows, keyed by team ID and task ID
+    private val taskFlows = SharedFlowCache<Task?>(scope, teamFlowLingerMillis)
+
+    /**
+     * Strategies for reading the assigned members of a task.
+     */
+    enum class AssignedMembersReadMode {
+        // Only the denormalized field on the task document is read
+        FIELD,
+
+        // The field is read when present, otherwise the assigned members subcollection is listened to
+        DUAL
+    }
+
+    // Recomputes the task counters of teams whose counters are missing or broken
+    private val taskCountsReconciliation = TaskCountsReconciliation(db)
+
+    // Teams whose task counters have been reconciled, or are being reconciled, by this repository
+    private val reconciledTeams = mutableSetOf<String>()
+
+    // Listener registries of the team flows currently being collected
+    private val activeRegistries = mutableSetOf<ListenerRegistry>()
+
+    // Total number of listeners registered since the repository was created
+    private val registeredListeners = AtomicInteger(0)
+
+    /**
+     * Number of Firestore listeners currently registered by all open team flows.
+     */
+    val activeListenerCount: Int
+        get() = synchronized(activeRegistries) { activeRegistries.sumOf { it.size } }
+
+    /**
+     * Snapshot and emission counters of the tasks flows.
+     * Each tasks snapshot is expected to produce at most one emission.
+     */
+    val taskEmissionStats = EmissionStats()
+
+    /**
+     * Total number of Firestore listeners registered by team flows so far.
+     * Useful to check that an update does not cause listeners to be re-created.
+     */
+    val listenerRegistrationCount: Int
+        get() = registeredListeners.get()
+
+    /**
+     * Returns a Flow that emits Team objects with their tasks, based on Firestore updates.
+     * The members subcollection is not listened to: the number of members comes from
+     * [Team.memberCount] and the members themselves are loaded by [getTeamInfoFlow].
+     * All collectors of the same team share a single live subscription, which is kept
+     * alive for [teamFlowLingerMillis] after the last collector leaves and replays the
+     * latest Team to new collectors.
+     * @param ref DocumentReference pointing to the team document
+     * @return Flow that emits Team objects or null if team doesn't exist
+     */
+    fun getTeamFlow(ref: DocumentReference): Flow<Team?> =
+        teamFlows.get(ref.id) { createTeamFlow(ref) }
+
+    /**
+     * Returns the latest Team emitted by the shared flow of a team, if any.
+     * Lets a screen render immediately while its subscription catches up.
+     * @param teamId ID of the team
+     * @return The cached Team, or null if the team has not been loaded yet
+     */
+    fun getCachedTeam(teamId: String): Team? = teamFlows.cached(teamId)
+
+    /**
+     * Returns the number of collectors currently sharing the flow of a team.
+     * @param teamId ID of the team
+     * @return Number of subscribers
+     */
+    fun getTeamSubscriberCount(teamId: String): Int = teamFlows.subscriberCount(teamId)
+
+    /**
+     * Returns a Flow that emits the summary of a team, read from the team document only.
+     * Neither the members nor the tasks subcollections are listened to.
+     * @param ref DocumentReference pointing to the team document
+     * @return Flow that emits TeamSummary objects or null if team doesn't exist
+     */
+    fun getTeamSummaryFlow(ref: DocumentReference): Flow<TeamSummary?> =
+        getTeamDocumentFlow(ref)
+            .withMemberCount(ref)
+            .withReconciledTaskCounts(ref)
+            .map { it?.toSummary() }
+            .distinctUntilChanged()
+
+    /**
+     * Counts the members of a team with an aggregation query, without reading the member documents.
+     *
+     * @param teamRef Reference to the team document
+     * @return Number of documents in the members subcollection
+     */
+    suspend fun countMembers(teamRef: DocumentReference): Long =
+        teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS)
+            .count()
+            .get(AggregateSource.SERVER)
+            .await()
+            .count
+
+    /**
+     * Returns a Flow that emits a Team with its members but without its tasks.
+     * Meant for screens that load the tasks separately, e.g. with [getPagedTasks].
+     * @param ref DocumentReference pointing to the team document
+     * @return Flow that emits Team objects or null if team doesn't exist
+     */
+    fun getTeamInfoFlow(ref: DocumentReference): Flow<Team?> = combine(
+        getTeamDocumentFlow(ref).withReconciledTaskCounts(ref),
+        getMembersFlow(ref)
+    ) { team, members ->
+        team?.copy(members = members)
+    }.distinctUntilChanged()
+
+    /**
+     * Creates a live, cursor-paged source of the tasks of a team.
+     * Sorting and status filtering are performed by Firestore; the composite indexes they need
+     * are declared in firestore.indexes.json. If an index is missing, the source falls back to
+     * the unfiltered tasks ordered by creation date, to be filtered and sorted in memory.
+     * The caller is responsible for closing it.
+     * @param teamId ID of the team
+     * @param orderBy Task field the tasks are ordered by
+     * @param direction Direction of the ordering
+     * @param statuses Statuses of the tasks to read, must not be empty
+     * @param pageSize Number of tasks read per page
+     * @return Paged task source reading the first page
+     */
+    fun getPagedTasks(
+        teamId: String,
+        orderBy: String = Constants.FirestoreFields.Task.CREATION_DATE,
+        direction: Query.Direction = Query.Direction.DESCENDING,
+        statuses: Set<TaskStatus> = TaskStatus.entries.toSet(),
+        pageSize: Long = PagedTaskSource.DEFAULT_PAGE_SIZE
+    ): PagedTaskSource {
+        require(statuses.isNotEmpty()) { "At least one status must be selected" }
+
+        val tasksCollection = db.collection(Constants.FirestoreCollections.TEAMS)
+            .document(teamId)
+            .collection(Constants.FirestoreCollections.TEAM_TASKS)
+        val defaultQuery = tasksCollection
+            .orderBy(Constants.FirestoreFields.Task.CREATION_DATE, Query.Direction.DESCENDING)
+
+        var query: Query = tasksCollection
+        if (statuses.size < TaskStatus.entries.size) {
+            query = query.whereIn(Constants.FirestoreFields.Task.STATUS, statuses.map { it.name })
+        }
+        query = query.orderBy(orderBy, direction)
+
+        return PagedTaskSource(
+            query = query,
+            pageSize = pageSize,
+            fallbackQuery = defaultQuery.takeIf { query != it }
+        )
+    }
 
     /**
      * Creates a Flow that emits Team objects based on Firestore updates.
-     * The flow handles team data, members, and tasks with their assigned members.
+     * The team document and the tasks subcollection are observed by two independent flows
+     * combined into a single Team, so a change at one level does not re-create the listeners
+     * of the other level.
      * @param ref DocumentReference pointing to the team document
      * @return Flow that emits Team objects or null if team doesn't exist
      */
-    fun getTeamFlow(ref: DocumentReference): Flow<Team?> = callbackFlow {
-        val teamSubscription = ref.addSnapshotListener { snapshot, error ->
-            handleTeamSnapshot(snapshot, error, ref)
+    private fun createTeamFlow(ref: DocumentReference): Flow<Team?> = combine(
+        getTeamDocumentFlow(ref).withMemberCount(ref).withReconciledTaskCounts(ref),
+        getTasksFlow(ref)
+    ) { team, tasks ->
+        team?.copy(tasks = tasks)
+    }.distinctUntilChanged()
+
+    /**
+     * Fills in the member count of teams created before it was maintained on the team document.
+     * The members are counted once with an aggregation query; if that fails the count stays unknown.
+     * @param ref DocumentReference pointing to the team document
+     * @return Flow that emits the teams with their member count
+     */
+    private fun Flow<Team?>.withMemberCount(ref: DocumentReference): Flow<Team?> = flow {
+        var countedMembers: Long? = null
+        collect { team ->
+            if (team == null || team.memberCount != null) {
+                emit(team)
+                return@collect
+            }
+            if (countedMembers == null) {
+                countedMembers = try {
+                    countMembers(ref)
+                } catch (e: Exception) {
+                    Log.w(TAG, "Failed to count the members of team ${ref.id}", e)
+                    null
+                }
+            }
+            emit(team.copy(memberCount = countedMembers))
         }
-        awaitClose { teamSubscription.remove() }
     }
 
     /**
-     * Handles team document updates from Firestore.
-     * Creates Team object and sets up members listener if team exists.
-     * @param snapshot Team document snapshot
-     * @param error Potential error from Firestore
+     * Hides the task counters of teams created before they were maintained on the team document,
+     * or left partial by increments applied to missing counters, and reconciles them once per
+     * team with [TaskCountsReconciliation]. The reconciled counters then arrive with the next
+     * snapshot of the team document. If the reconciliation fails, the next snapshot tries again.
+     * @param ref DocumentReference pointing to the team document
+     * @return Flow that emits the teams, without their task counters until they are complete
+     */
+    private fun Flow<Team?>.withReconciledTaskCounts(ref: DocumentReference): Flow<Team?> = map { team ->
+        if (team == null || hasCompleteTaskCounts(team)) {
+            return@map team
+        }
+        val firstAttempt = synchronized(reconciledTeams) { reconciledTeams.add(ref.id) }
+        if (firstAttempt) {
+            scope.launch {
+                try {
+                    taskCountsReconciliation.reconcile(ref.id)
+                } catch (e: Exception) {
+                    Log.w(TAG, "Failed to reconcile the task counters of team ${ref.id}", e)
+                    synchronized(reconciledTeams) { reconciledTeams.remove(ref.id) }
+                }
+            }
+        }
+        team.copy(taskCounts = emptyMap())
+    }
+
+    /**
+     * Checks whether the task counters of a team have a non-negative value for every status.
+     * @param team The team
+     * @return True if the counters can be shown
+     */
+    private fun hasCompleteTaskCounts(team: Team): Boolean =
+        team.taskCounts.keys.containsAll(TaskStatus.entries) && team.taskCounts.values.none { it < 0 }
+
+    /**
+     * Creates a Flow that emits the team document without members and tasks.
+     * The listener delivers the cached document first, if any, and then live server data.
+     * @param ref DocumentReference pointing to the team document
+     * @return Flow that emits Team objects or null if team doesn't exist
+     */
+    private fun getTeamDocumentFlow(ref: DocumentReference): Flow<Team?> =
+        registryFlow { registry ->
+            registry.register(
+                TEAM_PATH,
+                ref.addSnapshotListener { snapshot, error ->
+                    handleTeamSnapshot(snapshot, error)
+                }
+            )
+        }
+
+    /**
+     * Creates a Flow that emits the members of a team.
+     * The listener delivers the cached members first, if any, and then live server data.
      * @param teamRef Reference to team document
+     * @return Flow that emits the current list of team members
      */
-    private fun ProducerScope<Team?>.handleTeamSnapshot(
+    private fun getMembersFlow(teamRef: DocumentReference): Flow<List<TeamMember>> =
+        registryFlow { registry ->
+            val membersCollection = teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS)
+
+            registry.register(
+                MEMBERS_PATH,
+                membersCollection.addSnapshotListener { membersSnapshot, membersError ->
+                    handleMembersSnapshot(membersSnapshot, membersError)
+                }
+            )
+        }
+
+    /**
+     * Creates a Flow that emits the tasks of a team with their assigned members.
+     * The listener delivers the cached tasks first, if any, and then live server data.
+     * Each snapshot is applied to a [TaskStore] as a set of document changes,
+     * so only added and modified documents are mapped again.
+     * Emissions go through an [EmissionCoalescer]: a snapshot that starts assigned members
+     * loads is emitted once, when all of them have resolved or [COALESCE_DEADLINE_MS] passed.
+     * Assigned members are read from the task document itself. In [AssignedMembersReadMode.DUAL]
+     * mode, tasks that were not migrated yet get one assigned members listener: it is attached
+     * when the task first appears and removed when the task is deleted or migrated.
+     * @param teamRef Reference to team document
+     * @return Flow that emits the current list of tasks
+     */
+    private fun getTasksFlow(teamRef: DocumentReference): Flow<List<Task>> =
+        registryFlow { registry ->
+            val tasksCollection = teamRef.collection(Constants.FirestoreCollections.TEAM_TASKS)
+            val taskStore = TaskStore()
+            val coalescer = EmissionCoalescer(taskEmissionStats)
+            var snapshotReceived = false
+
+            registry.register(
+                TASKS_PATH,
+                tasksCollection.addSnapshotListener { tasksSnapshot, tasksError ->
+                    val firstSnapshot = !snapshotReceived
+                    snapshotReceived = true
+                    handleTasksSnapshot(tasksSnapshot, tasksError, taskStore, coalescer, registry)
+                    if (tasksSnapshot != null && tasksError == null) {
+                        updateSearchIndex(teamRef.id, tasksSnapshot, taskStore, firstSnapshot)
+                    }
+                }
+            )
+        }
+
+    /**
+     * Returns a Flow that emits a single task of a team with its assigned members.
+     * Only the task document (and, for tasks not migrated yet, its assigned members
+     * subcollection) is listened to, so the cost does not depend on the size of the team.
+     * @param teamId ID of the team
+     * @param taskId ID of the task
+     * @return Flow that emits the Task or null if it doesn't exist
+     */
+    fun getTaskFlow(teamId: String, taskId: String): Flow<Task?> =
+        taskFlows.get("$teamId/$taskId") { createTaskFlow(getTaskReference(teamId, taskId)) }
+
+    /**
+     * Returns the latest known version of a task, from its own flow or from the flow of its team.
+     * @param teamId ID of the team
+     * @param taskId ID of the task
+     * @return The cached Task, or null if it has not been loaded yet
+     */
+    fun getCachedTask(teamId: String, taskId: String): Task? =
+        taskFlows.cached("$teamId/$taskId")
+            ?: getCachedTeam(teamId)?.tasks?.find { it.id == taskId }
+
+    /**
+     * Creates a Flow that emits a single task document with its assigned members.
+     * @param taskRef Reference to the task document
+     * @return Flow that emits the Task or null if it doesn't exist
+     */
+    private fun createTaskFlow(taskRef: DocumentReference): Flow<Task?> =
+        registryFlow { registry ->
+            val taskStore = TaskStore()
+
+            registry.register(
+                TASK_PATH,
+                taskRef.addSnapshotListener { snapshot, error ->
+                    handleTaskSnapshot(snapshot, error, taskStore, registry)
+                }
+            )
+        }
+
+    /**
+     * Handles single task document updates from Firestore.
+     * For tasks lacking the assigned members field, the assigned members subcollection
+     * is listened to and the task is emitted once its assigned members are known.
+     * @param snapshot Task document snapshot
+     * @param error Potential error from Firestore
+     * @param taskStore Store holding the task
+     * @param registry Registry tracking the listeners of this flow
+     */
+    private fun ProducerScope<Task?>.handleTaskSnapshot(
         snapshot: DocumentSnapshot?,
         error: Exception?,
-        teamRef: DocumentReference
+        taskStore: TaskStore,
+        registry: ListenerRegistry
     ) {
         if (error != null) {
             close(error)
@@ -54,47 +406,104 @@ class TeamRepository {
         }
 
         if (snapshot == null || !snapshot.exists()) {
+            registry.remove(TASK_ASSIGNED_MEMBERS_PATH)
             trySend(null)
             return
         }
 
-        val team = Team.fromFirestore(
-            id = snapshot.id,
-            data = snapshot.data ?: emptyMap()
+        taskStore.apply(
+            listOf(TaskStore.Change(DocumentChange.Type.MODIFIED, snapshot.id, snapshot.data ?: emptyMap()))
         )
 
-        setupMembersListener(teamRef, team)
+        if (!needsAssignedMembersFallback(snapshot)) {
+            registry.remove(TASK_ASSIGNED_MEMBERS_PATH)
+            taskStore.clearAssignedMembers(snapshot.id)
+            trySend(taskStore.tasks.firstOrNull())
+            return
+        }
+
+        if (TASK_ASSIGNED_MEMBERS_PATH in registry) {
+            trySend(taskStore.tasks.firstOrNull())
+            return
+        }
+
+        // The task is emitted by the assigned members listener once they are known
+        registry.register(
+            TASK_ASSIGNED_MEMBERS_PATH,
+            snapshot.reference.collection(Constants.FirestoreCollections.TASK_ASSIGNED_MEMBERS)
+                .addSnapshotListener { assignedMembersSnapshot, assignedMembersError ->
+                    if (assignedMembersError != null) {
+                        close(assignedMembersError)
+                        return@addSnapshotListener
+                    }
+
+                    val assignedMembers = assignedMembersSnapshot?.documents
+                        ?.mapNotNull { it.get(Constants.FirestoreFields.AssignedMember.MEMBER_REF) as? DocumentReference }
+                        ?: emptyList()
+
+                    taskStore.setAssignedMembers(snapshot.id, assignedMembers)
+                    trySend(taskStore.tasks.firstOrNull())
+                }
+        )
     }
 
     /**
-     * Sets up real-time listener for team members subcollection.
-     * Triggers member snapshot handler when changes occur.
-     * @param teamRef Reference to team document
-     * @param team Current team object
+     * Creates a callbackFlow backed by its own [ListenerRegistry].
+     * The registry is counted in [activeListenerCount] while the flow is collected
+     * and all of its listeners are removed when the flow is closed.
+     * @param block Registers the Firestore listeners of the flow
+     * @return Flow emitting the values sent by the listeners
      */
-    private fun ProducerScope<Team?>.setupMembersListener(
-        teamRef: DocumentReference,
-        team: Team
+    private fun <T> registryFlow(
+        block: ProducerScope<T>.(ListenerRegistry) -> Unit
+    ): Flow<T> = callbackFlow {
+        val registry = ListenerRegistry(onRegister = { registeredListeners.incrementAndGet() })
+        synchronized(activeRegistries) { activeRegistries.add(registry) }
+
+        block(registry)
+        awaitClose {
+            registry.close()
+            synchronized(activeRegistries) { activeRegistries.remove(registry) }
+        }
+    }
+
+    /**
+     * Handles team document updates from Firestore.
+     * Emits the Team object without members and tasks, or null if it doesn't exist.
+     * @param snapshot Team document snapshot
+     * @param error Potential error from Firestore
+     */
+    private fun ProducerScope<Team?>.handleTeamSnapshot(
+        snapshot: DocumentSnapshot?,
+        error: Exception?
     ) {
-        teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS)
-            .addSnapshotListener { membersSnapshot, membersError ->
-                handleMembersSnapshot(membersSnapshot, membersError, teamRef, team)
-            }
+        if (error != null) {
+            close(error)
+            return
+        }
+
+        if (snapshot == null || !snapshot.exists()) {
+            trySend(null)
+            return
+        }
+
+        trySend(
+            Team.fromFirestore(
+                id = snapshot.id,
+                data = snapshot.data ?: emptyMap()
+            )
+        )
     }
 
     /**
      * Processes member updates from Firestore.
-     * Creates TeamMember objects and sets up tasks listener.
+     * Creates TeamMember objects and emits them.
      * @param membersSnapshot Query snapshot of members collection
      * @param error Potential error from Firestore
-     * @param teamRef Reference to team document
-     * @param team Current team object
      */
-    private fun ProducerScope<Team?>.handleMembersSnapshot(
+    private fun ProducerScope<List<TeamMember>>.handleMembersSnapshot(
         membersSnapshot: QuerySnapshot?,
-        error: Exception?,
-        teamRef: DocumentReference,
-        team: Team
+        error: Exception?
     ) {
         if (error != null) {
             close(error)
@@ -102,97 +511,184 @@ class TeamRepository {
         }
 
         val members = membersSnapshot?.documents?.mapNotNull { doc ->
-            TeamMember(
-                role = doc.getString(Constants.FirestoreFields.TeamMember.ROLE) ?: "",
-                profileRef = doc.get(Constants.FirestoreFields.TeamMember.PROFILE_REF) as? DocumentReference
-            )
+            doc.data?.let { TeamMember.fromFirestore(it) }
         } ?: emptyList()
 
-        setupTasksListener(teamRef, team, members)
+        trySend(members)
     }
 
     /**
-     * Sets up real-time listener for team tasks subcollection.
-     * Triggers task snapshot handler when changes occur.
-     * @param teamRef Reference to team document
-     * @param team Current team object
-     * @param members List of team members
+     * Applies the document changes of a tasks snapshot to the search index.
+     * The first snapshot of a flow holds every known task of the team, so the team is replaced
+     * as a whole, dropping the tasks deleted while no flow of the team was open.
+     *
+     * @param teamId ID of the team
+     * @param tasksSnapshot Query snapshot of tasks collection, already applied to the task store
+     * @param taskStore Current tasks of the team
+     * @param replaceTeam Whether the snapshot holds every task of the team
      */
-    private fun ProducerScope<Team?>.setupTasksListener(
-        teamRef: DocumentReference,
-        team: Team,
-        members: List<TeamMember>
+    private fun updateSearchIndex(
+        teamId: String,
+        tasksSnapshot: QuerySnapshot,
+        taskStore: TaskStore,
+        replaceTeam: Boolean
     ) {
-        teamRef.collection(Constants.FirestoreCollections.TEAM_TASKS)
-            .addSnapshotListener { tasksSnapshot, tasksError ->
-                handleTasksSnapshot(tasksSnapshot, tasksError, team, members)
+        if (replaceTeam) {
+            taskSearchIndex.replaceTeam(teamId, taskStore.tasks)
+            return
+        }
+        tasksSnapshot.documentChanges.forEach { change ->
+            val taskId = change.document.id
+            if (change.type == DocumentChange.Type.REMOVED) {
+                taskSearchIndex.remove(teamId, taskId)
+            } else {
+                taskStore[taskId]?.let { taskSearchIndex.upsert(teamId, it) }
             }
+        }
     }
 
     /**
      * Handles task updates from Firestore.
-     * Creates Task objects and sets up listeners for assigned members.
-     * Emits updated team state with current tasks.
+     * Applies the document changes of the snapshot to the task store, attaches an
+     * assigned members listener to new tasks lacking the assigned members field and
+     * removes the listeners of deleted tasks.
+     * Emits the current tasks when at least one of them changed, once all the assigned
+     * members loads started by this snapshot have resolved.
      *
      * @param tasksSnapshot Query snapshot of tasks collection
      * @param error Potential error from Firestore
-     * @param team Current team object
-     * @param members List of team members
+     * @param taskStore Current tasks of the team
+     * @param coalescer Coalescer of the emissions of this flow
+     * @param registry Registry tracking the listeners of this flow
      */
-    private fun ProducerScope<Team?>.handleTasksSnapshot(
+    private fun ProducerScope<List<Task>>.handleTasksSnapshot(
         tasksSnapshot: QuerySnapshot?,
         error: Exception?,
-        team: Team,
-        members: List<TeamMember>
+        taskStore: TaskStore,
+        coalescer: EmissionCoalescer,
+        registry: ListenerRegistry
     ) {
         if (error != null) {
             close(error)
             return
         }
 
-        // Initialize tasks map to maintain state across updates
-        val tasksMap = mutableMapOf<String, Task>()
+        val documentChanges = tasksSnapshot?.documentChanges ?: emptyList()
+        val startedLoads = mutableListOf<String>()
+        var released = false
+
+        documentChanges.forEach { change ->
+            val taskDoc = change.document
+            val path = TASKS_PATH + taskDoc.id
 
-        if (tasksSnapshot?.documents.isNullOrEmpty()) {
-            // If there are no tasks, emit team with empty task list
-            trySend(team.copy(members = members, tasks = emptyList()))
+            if (change.type == DocumentChange.Type.REMOVED || !needsAssignedMembersFallback(taskDoc)) {
+                registry.remove(path)
+                taskStore.clearAssignedMembers(taskDoc.id)
+                released = coalescer.cancel(taskDoc.id) || released
+            } else if (path !in registry) {
+                registry.register(
+                    path,
+                    setupAssignedMembersListener(taskDoc, taskStore, coalescer)
+                )
+                startedLoads.add(taskDoc.id)
+            }
+        }
+
+        val changed = taskStore.apply(
+            documentChanges.map { change ->
+                TaskStore.Change(
+                    type = change.type,
+                    id = change.document.id,
+                    data = change.document.data
+                )
+            }
+        )
+
+        if (!coalescer.onSnapshot(startedLoads)) {
+            val generation = coalescer.generation
+            launch(Dispatchers.Main.immediate) {
+                delay(COALESCE_DEADLINE_MS)
+                if (coalescer.onDeadline(generation)) {
+                    emitTasks(taskStore, coalescer)
+                }
+            }
             return
         }
 
-        tasksSnapshot?.documents?.forEach { taskDoc ->
-            val task = Task.fromFirestore(
-                id = taskDoc.id,
-                data = taskDoc.data ?: emptyMap()
-            )
+        // The first snapshot of an empty collection has no changes but must still be emitted
+        if (changed || released || tasksSnapshot?.isEmpty == true) {
+            emitTasks(taskStore, coalescer)
+        }
+    }
 
-            // Set up snapshot listener for assigned members
-            taskDoc.reference.collection(Constants.FirestoreCollections.TASK_ASSIGNED_MEMBERS)
-                .addSnapshotListener { assignedMembersSnapshot, assignedMembersError ->
-                    if (assignedMembersError != null) {
-                        close(assignedMembersError)
-                        return@addSnapshotListener
-                    }
+    /**
+     * Emits the current tasks and records the emission.
+     *
+     * @param taskStore Current tasks of the team
+     * @param coalescer Coalescer of the emissions of this flow
+     */
+    private fun ProducerScope<List<Task>>.emitTasks(
+        taskStore: TaskStore,
+        coalescer: EmissionCoalescer
+    ) {
+        coalescer.recordEmission()
+        trySend(taskStore.tasks)
+    }
 
-                    val assignedMembers = assignedMembersSnapshot?.documents
-                        ?.mapNotNull { it.get(Constants.FirestoreFields.AssignedMember.MEMBER_REF) as? DocumentReference }
-                        ?: emptyList()
+    /**
+     * Checks whether the assigned members of a task have to be read from the
+     * legacy subcollection because the task document has no assigned members field.
+     *
+     * @param taskDoc Snapshot of the task document
+     * @return True if the subcollection has to be listened to
+     */
+    private fun needsAssignedMembersFallback(taskDoc: DocumentSnapshot): Boolean =
+        assignedMembersReadMode == AssignedMembersReadMode.DUAL &&
+                !taskDoc.contains(Constants.FirestoreFields.Task.ASSIGNED_MEMBERS)
 
-                    tasksMap[task.id] = task.copy(assignedMembers = assignedMembers)
+    /**
+     * Sets up real-time listener for the assigned members subcollection of a task.
+     * Emits the updated task list whenever the assigned members change, unless the
+     * emission is held back until the other loads of the same snapshot resolve.
+     *
+     * @param taskDoc Snapshot of the task document
+     * @param taskStore Current tasks of the team
+     * @param coalescer Coalescer of the emissions of this flow
+     * @return Registration of the listener
+     */
+    private fun ProducerScope<List<Task>>.setupAssignedMembersListener(
+        taskDoc: DocumentSnapshot,
+        taskStore: TaskStore,
+        coalescer: EmissionCoalescer
+    ) = taskDoc.reference.collection(Constants.FirestoreCollections.TASK_ASSIGNED_MEMBERS)
+        .addSnapshotListener { assignedMembersSnapshot, assignedMembersError ->
+            if (assignedMembersError != null) {
+                close(assignedMembersError)
+                return@addSnapshotListener
+            }
 
-                    // Emit updated team with current tasks
-                    trySend(
-                        team.copy(
-                            members = members,
-                            tasks = tasksMap.values.toList()
-                        )
-                    )
-                }
+            val assignedMembers = assignedMembersSnapshot?.documents
+                ?.mapNotNull { it.get(Constants.FirestoreFields.AssignedMember.MEMBER_REF) as? DocumentReference }
+                ?: emptyList()
+
+            val releasing = coalescer.isHolding
+            val changed = taskStore.setAssignedMembers(taskDoc.id, assignedMembers)
+
+            // Emit updated tasks
+            if (coalescer.onChildLoaded(taskDoc.id) && (changed || releasing)) {
+                emitTasks(taskStore, coalescer)
+            }
         }
-    }
 
     /**
      * Creates a new team in Firestore with the given name, description, and members.
      * Adds the current user as an admin and updates profiles with the team reference.
+     * The number of members is stored on the team document, so that it can be shown
+     * without reading the members subcollection.
+     *
+     * Document IDs are generated on the client and all the writes are committed with a single
+     * batch, so the team is created atomically in one round trip. Teams needing more than
+     * [MAX_BATCH_WRITES] writes are split across several batches.
      *
      * @param teamName Name of the team
      * @param teamDescription Description of the team
@@ -204,46 +700,61 @@ class TeamRepository {
         teamDescription: String = "",
         memberIds: Set<String> = setOf(Constants.User.USER_ID)
     ): DocumentReference {
-        val teamRef = db.collection(Constants.FirestoreCollections.TEAMS)
-            .add(
-                mapOf(
-                    Constants.FirestoreFields.Team.NAME to teamName,
-                    Constants.FirestoreFields.Team.DESCRIPTION to teamDescription
-                )
-            ).await()
+        val profilesCollection = db.collection(Constants.FirestoreCollections.PROFILES)
+        val teamRef = db.collection(Constants.FirestoreCollections.TEAMS).document()
+        val membersCollection = teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS)
+        val writes = mutableListOf<(WriteBatch) -> Unit>()
+
+        writes.add { batch ->
+            batch.set(
+                teamRef,
+                Team(
+                    name = teamName,
+                    description = teamDescription,
+                    memberCount = (memberIds + Constants.User.USER_ID).size.toLong()
+                ).toFirestore()
+            )
+        }
 
         // Add the current user as admin
-        teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS)
-            .add(
-                mapOf(
-                    Constants.FirestoreFields.TeamMember.ROLE to Constants.FirestoreValues.TeamMemberRole.ADMIN,
-                    Constants.FirestoreFields.TeamMember.PROFILE_REF to db.collection(
-                        Constants.FirestoreCollections.PROFILES
-                    ).document(Constants.User.USER_ID)
-                )
-            ).await()
+        writes.add { batch ->
+            batch.set(
+                membersCollection.document(),
+                TeamMember(
+                    role = Constants.FirestoreValues.TeamMemberRole.ADMIN,
+                    profileRef = profilesCollection.document(Constants.User.USER_ID)
+                ).toFirestore()
+            )
+        }
 
         // Add other selected members
         memberIds.filter { it != Constants.User.USER_ID }.forEach { memberId ->
-            teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS)
-                .add(
-                    mapOf(
-                        Constants.FirestoreFields.TeamMember.ROLE to Constants.FirestoreValues.TeamMemberRole.MEMBER,
-                        Constants.FirestoreFields.TeamMember.PROFILE_REF to db.collection(
-                            Constants.FirestoreCollections.PROFILES
-                        ).document(memberId)
-                    )
-                ).await()
+            writes.add { batch ->
+                batch.set(
+                    membersCollection.document(),
+                    TeamMember(
+                        role = Constants.FirestoreValues.TeamMemberRole.MEMBER,
+                        profileRef = profilesCollection.document(memberId)
+                    ).toFirestore()
+                )
+            }
         }
 
         // Update all selected profiles with the team reference
         memberIds.forEach { memberId ->
-            db.collection(Constants.FirestoreCollections.PROFILES)
-                .document(memberId)
-                .update(
+            writes.add { batch ->
+                batch.update(
+                    profilesCollection.document(memberId),
                     Constants.FirestoreFields.Profile.TEAMS,
                     FieldValue.arrayUnion(teamRef)
-                ).await()
+                )
+            }
+        }
+
+        writes.chunked(MAX_BATCH_WRITES).forEach { chunk ->
+            val batch = db.batch()
+            chunk.forEach { write -> write(batch) }
+            batch.commit().await()
         }
 
         return teamRef
@@ -251,6 +762,7 @@ class TeamRepository {
 
     /**
      * Creates a new task in Firestore for the specified team.
+     * The task and the increment of the team's counter of its status are written in one batch.
      *
      * @param teamId ID of the team
      * @param taskName Name of the task
@@ -262,35 +774,62 @@ class TeamRepository {
         taskDescription: String
     ) {
         val teamRef = db.collection(Constants.FirestoreCollections.TEAMS).document(teamId)
+        val task = Task(
+            name = taskName,
+            description = taskDescription,
+            creationDate = Timestamp.now(),
+            status = TaskStatus.TODO
+        )
 
-        teamRef.collection(Constants.FirestoreCollections.TEAM_TASKS)
-            .add(
-                mapOf(
-                    Constants.FirestoreFields.Task.NAME to taskName,
-                    Constants.FirestoreFields.Task.DESCRIPTION to taskDescription,
-                    Constants.FirestoreFields.Task.CREATION_DATE to Timestamp.now(),
-                    Constants.FirestoreFields.Task.STATUS to TaskStatus.TODO.name
-                )
-            ).await()
+        db.batch()
+            .set(teamRef.collection(Constants.FirestoreCollections.TEAM_TASKS).document(), task.toFirestore())
+            .update(teamRef, taskCountField(task.status), FieldValue.increment(1))
+            .commit()
+            .await()
     }
 
     /**
-     * Updates the status of a task in Firestore.
+     * Builds the reference of a task document.
      *
      * @param teamId ID of the team
      * @param taskId ID of the task
-     * @param status New status of the task
+     * @return Reference to the task document
      */
-    suspend fun updateTaskStatus(
-        teamId: String,
-        taskId: String,
-        status: TaskStatus
-    ) {
+    private fun getTaskReference(teamId: String, taskId: String): DocumentReference =
         db.collection(Constants.FirestoreCollections.TEAMS)
             .document(teamId)
             .collection(Constants.FirestoreCollections.TEAM_TASKS)
             .document(taskId)
-            .update(Constants.FirestoreFields.Task.STATUS, status.name)
-            .await()
+
+    companion object {
+        private const val TAG = "TeamRepository"
+
+        /**
+         * Returns the path of the counter of a status within a team document.
+         *
+         * @param status Status of the counted tasks
+         * @return Field path of the counter
+         */
+        fun taskCountField(status: TaskStatus): String =
+            "${Constants.FirestoreFields.Team.TASK_COUNTS}.${status.name}"
+
+        // Listener registry paths of the team flows
+        private val TEAM_PATH = listOf(Constants.FirestoreCollections.TEAMS)
+        private val MEMBERS_PATH = listOf(Constants.FirestoreCollections.TEAM_MEMBERS)
+        private val TASKS_PATH = listOf(Constants.FirestoreCollections.TEAM_TASKS)
+
+        // Listener registry paths of the single task flows
+        private val TASK_PATH = listOf(Constants.FirestoreCollections.TEAM_TASKS)
+        private val TASK_ASSIGNED_MEMBERS_PATH =
+            TASK_PATH + Constants.FirestoreCollections.TASK_ASSIGNED_MEMBERS
+
+        // Maximum number of writes allowed by Firestore in a single batch
+        const val MAX_BATCH_WRITES = 500
+
+        // Default time a shared team flow stays alive without subscribers
+        const val DEFAULT_LINGER_MILLIS = 5_000L
+
+        // Maximum time a tasks snapshot waits for its assigned members loads before being emitted
+        const val COALESCE_DEADLINE_MS = 300L
     }
 }
\ No newline at end of file
@@ -9,10 +9,14 @@ import androidx.compose.foundation.layout.fillMaxWidth
 import androidx.compose.foundation.layout.padding
 import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.foundation.text.KeyboardOptions
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.Check
+import androidx.compose.material.icons.filled.Search
 import androidx.compose.material3.Checkbox
+import androidx.compose.material3.CircularProgressIndicator
+import androidx.compose.material3.Icon
 import androidx.compose.material3.MaterialTheme
 import androidx.compose.material3.OutlinedTextField
 import androidx.compose.material3.Text
@@ -23,6 +27,7 @@ import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
 import androidx.compose.runtime.setValue
+import androidx.compose.runtime.snapshotFlow
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.text.input.KeyboardCapitalization
@@ -36,6 +41,11 @@ import it.polito.thesisapp.ui.components.ScaffoldWithFab
 import it.polito.thesisapp.ui.components.UserMonogram
 import it.polito.thesisapp.utils.Constants
 import it.polito.thesisapp.viewmodel.CreateTeamViewModel
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.filter
+
+// Number of items from the end of the profile list at which the next page is requested
+private const val LOAD_MORE_THRESHOLD = 5
 
 /**
  * Composable function that displays the screen for creating a new team.
@@ -52,12 +62,29 @@ fun CreateTeamScreen(
 ) {
     var teamName by remember { mutableStateOf("") }
     var teamDescription by remember { mutableStateOf("") }
-    val allProfiles by viewModel.allProfiles.collectAsState()
+    val profiles by viewModel.profiles.collectAsState()
     val selectedProfileIds by viewModel.selectedProfileIds.collectAsState()
     val isLoading by viewModel.isLoading.collectAsState()
+    val searchQuery by viewModel.searchQuery.collectAsState()
+    val isSearching by viewModel.isSearching.collectAsState()
+    val hasMoreResults by viewModel.hasMoreResults.collectAsState()
+    val lazyListState = rememberLazyListState()
 
     LaunchedEffect(Unit) {
-        viewModel.loadAllProfiles()
+        viewModel.loadProfiles()
+    }
+
+    // Load the next page of search results when the end of the list is near
+    LaunchedEffect(lazyListState) {
+        snapshotFlow {
+            val layoutInfo = lazyListState.layoutInfo
+            val lastVisibleIndex = layoutInfo.visibleItemsInfo.lastOrNull()?.index ?: 0
+            hasMoreResults && !isSearching &&
+                    lastVisibleIndex >= layoutInfo.totalItemsCount - LOAD_MORE_THRESHOLD
+        }
+            .distinctUntilChanged()
+            .filter { it }
+            .collect { viewModel.loadNextPage() }
     }
 
     LaunchedEffect(teamName, teamDescription) {
@@ -88,6 +115,7 @@ fun CreateTeamScreen(
                 LoadingIndicator()
             } else {
                 LazyColumn(
+                    state = lazyListState,
                     modifier = Modifier.fillMaxSize(),
                     verticalArrangement = Arrangement.spacedBy(16.dp)
                 ) {
@@ -133,16 +161,42 @@ fun CreateTeamScreen(
                             modifier = Modifier.padding(vertical = 8.dp)
                         )
                     }
-                    items(allProfiles) { profile ->
+                    item {
+                        OutlinedTextField(
+                            value = searchQuery,
+                            onValueChange = { viewModel.updateSearchQuery(it) },
+                            label = { Text("Search by name") },
+                            leadingIcon = {
+                                Icon(imageVector = Icons.Default.Search, contentDescription = null)
+                            },
+                            modifier = Modifier.fillMaxWidth(),
+                            singleLine = true,
+                            keyboardOptions = KeyboardOptions(
+                                capitalization = KeyboardCapitalization.Words,
+                                autoCorrectEnabled = false
+                            )
+                        )
+                    }
+                    items(profiles, key = { it.id }) { profile ->
                         ProfileCheckboxItem(
                             profile = profile,
                             isSelected = profile.id in selectedProfileIds,
                             isCurrentUser = profile.id == Constants.User.USER_ID,
                             onSelectionChanged = { selected ->
-                                viewModel.toggleProfileSelection(profile.id, selected)
+                                viewModel.toggleProfileSelection(profile, selected)
                             }
                         )
                     }
+                    if (isSearching) {
+                        item {
+                            Box(
+                                modifier = Modifier.fillMaxWidth(),
+                                contentAlignment = Alignment.Center
+                            ) {
+                                CircularProgressIndicator()
+                            }
+                        }
+                    }
                 }
             }
         }
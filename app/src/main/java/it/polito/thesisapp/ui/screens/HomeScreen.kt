@@ -19,11 +19,14 @@ import androidx.compose.foundation.pager.PagerState
 import androidx.compose.foundation.pager.rememberPagerState
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.Add
+import androidx.compose.material.icons.filled.Clear
+import androidx.compose.material.icons.filled.Search
 import androidx.compose.material3.ElevatedCard
 import androidx.compose.material3.HorizontalDivider
 import androidx.compose.material3.Icon
 import androidx.compose.material3.IconButton
 import androidx.compose.material3.MaterialTheme
+import androidx.compose.material3.OutlinedTextField
 import androidx.compose.material3.Surface
 import androidx.compose.material3.Text
 import androidx.compose.runtime.Composable
@@ -42,8 +45,9 @@ import it.polito.thesisapp.R
 import it.polito.thesisapp.model.Profile
 import it.polito.thesisapp.model.Task
 import it.polito.thesisapp.model.TaskStatus
-import it.polito.thesisapp.model.Team
+import it.polito.thesisapp.model.TeamSummary
 import it.polito.thesisapp.navigation.NavigationManager.NavigationEvent
+import it.polito.thesisapp.repository.TaskSearchResult
 import it.polito.thesisapp.ui.LocalNavigationManager
 import it.polito.thesisapp.ui.components.LoadingIndicator
 import it.polito.thesisapp.ui.components.ScaffoldWithFab
@@ -67,6 +71,8 @@ fun HomeScreen(
     val profile by viewModel.profile.collectAsState()
     val teams by viewModel.teams.collectAsState()
     val isLoading by viewModel.isLoading.collectAsState()
+    val searchQuery by viewModel.searchQuery.collectAsState()
+    val searchResults by viewModel.searchResults.collectAsState()
     val pagerState = rememberPagerState { teams.size }
     teams.getOrNull(pagerState.currentPage)
 
@@ -100,18 +106,111 @@ fun HomeScreen(
                     verticalArrangement = Arrangement.spacedBy(16.dp)
                 ) {
                     WelcomeSection(profile)
-                    TeamSection(
-                        teams,
-                        pagerState,
-                        onTeamClick = onNavigateToTeam
-                    )
-                    HorizontalDivider()
-                    TasksSection(
-                        viewModel = viewModel,
-                        onNavigateToTask = onNavigateToTask
+                    TaskSearchField(
+                        query = searchQuery,
+                        onQueryChange = { viewModel.updateSearchQuery(it) }
                     )
+                    if (searchQuery.isBlank()) {
+                        TeamSection(
+                            teams,
+                            pagerState,
+                            onTeamClick = onNavigateToTeam
+                        )
+                        HorizontalDivider()
+                        TasksSection(
+                            viewModel = viewModel,
+                            onNavigateToTask = onNavigateToTask
+                        )
+                    } else {
+                        TaskSearchSection(
+                            results = searchResults,
+                            teams = teams,
+                            onNavigateToTask = onNavigateToTask
+                        )
+                    }
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Composable function that displays the field searching the tasks of every team.
+ *
+ * @param query The current search query.
+ * @param onQueryChange Callback to be invoked when the query is edited or cleared.
+ */
+@Composable
+private fun TaskSearchField(
+    query: String,
+    onQueryChange: (String) -> Unit
+) {
+    OutlinedTextField(
+        value = query,
+        onValueChange = onQueryChange,
+        label = { Text("Search tasks") },
+        leadingIcon = {
+            Icon(imageVector = Icons.Default.Search, contentDescription = null)
+        },
+        trailingIcon = {
+            if (query.isNotEmpty()) {
+                IconButton(onClick = { onQueryChange("") }) {
+                    Icon(imageVector = Icons.Default.Clear, contentDescription = "Clear search")
                 }
             }
+        },
+        modifier = Modifier
+            .fillMaxWidth()
+            .testTag("task_search_field"),
+        singleLine = true
+    )
+}
+
+/**
+ * Composable function that displays the tasks matching the search, grouped by team.
+ *
+ * @param results The matching tasks, grouped by team.
+ * @param teams The teams of the user, used to show the name of each group.
+ * @param onNavigateToTask Callback to be invoked when a task is clicked.
+ */
+@Composable
+private fun TaskSearchSection(
+    results: List<TaskSearchResult>,
+    teams: List<TeamSummary>,
+    onNavigateToTask: (String, String) -> Unit
+) {
+    val teamNames = teams.associate { it.id to it.name }
+
+    if (results.isEmpty()) {
+        Text(
+            text = "No matching tasks",
+            style = MaterialTheme.typography.bodyMedium,
+            color = MaterialTheme.colorScheme.onSurfaceVariant
+        )
+        return
+    }
+
+    LazyColumn(
+        verticalArrangement = Arrangement.spacedBy(8.dp)
+    ) {
+        results.forEach { result ->
+            item(key = "team_${result.teamId}") {
+                Text(
+                    text = teamNames[result.teamId] ?: "",
+                    style = MaterialTheme.typography.titleMedium,
+                    color = MaterialTheme.colorScheme.primary
+                )
+            }
+            items(
+                items = result.tasks,
+                key = { task -> "${result.teamId}/${task.id}" }
+            ) { task ->
+                TaskCard(
+                    task = task,
+                    teamId = result.teamId,
+                    onTaskClick = onNavigateToTask
+                )
+            }
         }
     }
 }
@@ -279,7 +378,7 @@ private fun TaskStatusChip(status: TaskStatus) {
  */
 @Composable
 private fun TeamSection(
-    teams: List<Team>,
+    teams: List<TeamSummary>,
     pagerState: PagerState,
     onTeamClick: (String) -> Unit
 ) {
@@ -318,7 +417,7 @@ private fun TeamSection(
  */
 @Composable
 private fun TeamCard(
-    team: Team,
+    team: TeamSummary,
     modifier: Modifier = Modifier,
     onTeamClick: (String) -> Unit
 ) {
@@ -338,9 +437,18 @@ private fun TeamCard(
                 style = MaterialTheme.typography.titleMedium
             )
             Text(
-                text = "${team.members.size} members",
+                text = "${team.memberCount} members",
                 style = MaterialTheme.typography.bodyMedium
             )
+            if (team.taskCounts.isNotEmpty()) {
+                val doneCount = team.taskCounts[TaskStatus.DONE] ?: 0L
+                val openCount = team.taskCounts.values.sum() - doneCount
+                Text(
+                    text = "$openCount open · $doneCount done",
+                    style = MaterialTheme.typography.bodySmall,
+                    color = MaterialTheme.colorScheme.onSurfaceVariant
+                )
+            }
         }
     }
 }
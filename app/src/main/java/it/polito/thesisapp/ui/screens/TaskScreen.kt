@@ -35,9 +35,11 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.unit.dp
 import androidx.hilt.navigation.compose.hiltViewModel
+import it.polito.thesisapp.model.Profile
 import it.polito.thesisapp.model.Task
 import it.polito.thesisapp.model.TaskStatus
 import it.polito.thesisapp.ui.components.LoadingIndicator
+import it.polito.thesisapp.ui.components.UserMonogram
 import it.polito.thesisapp.viewmodel.TaskViewModel
 
 /**
@@ -55,6 +57,7 @@ fun TaskScreen(
 ) {
     val task by viewModel.task.collectAsState()
     val isLoading by viewModel.isLoading.collectAsState()
+    val assignedProfiles by viewModel.assignedProfiles.collectAsState()
     val scrollState = rememberScrollState()
 
     LaunchedEffect(teamId, taskId) {
@@ -82,7 +85,7 @@ fun TaskScreen(
                     HorizontalDivider()
                     TaskDescription(taskData.description)
                     HorizontalDivider()
-                    AssignedMembers(taskData)
+                    AssignedMembers(taskData, assignedProfiles)
                 }
             }
         }
@@ -104,6 +107,8 @@ private fun TaskHeader(
     viewModel: TaskViewModel,
     modifier: Modifier = Modifier
 ) {
+    val statusError by viewModel.statusError.collectAsState()
+
     Column(
         modifier = modifier
             .fillMaxWidth()
@@ -127,6 +132,14 @@ private fun TaskHeader(
                 viewModel.updateTaskStatus(teamId, task.id, newStatus)
             }
         )
+
+        statusError?.let { error ->
+            Text(
+                text = error,
+                style = MaterialTheme.typography.bodySmall,
+                color = MaterialTheme.colorScheme.error
+            )
+        }
     }
 }
 
@@ -153,9 +166,10 @@ private fun TaskDescription(description: String) {
  * Composable function that displays the assigned members of the task.
  *
  * @param task The task object.
+ * @param profiles The resolved profiles of the assigned members.
  */
 @Composable
-private fun AssignedMembers(task: Task) {
+private fun AssignedMembers(task: Task, profiles: List<Profile>) {
     Column(verticalArrangement = Arrangement.spacedBy(8.dp)) {
         Text(
             text = "Assigned Members",
@@ -165,6 +179,20 @@ private fun AssignedMembers(task: Task) {
             text = "${task.assignedMembers.size} members assigned",
             style = MaterialTheme.typography.bodyMedium
         )
+        profiles.forEach { profile ->
+            Row(verticalAlignment = Alignment.CenterVertically) {
+                UserMonogram(
+                    firstName = profile.firstName,
+                    lastName = profile.lastName,
+                    size = 40
+                )
+                Text(
+                    text = "${profile.firstName} ${profile.lastName}",
+                    style = MaterialTheme.typography.bodyLarge,
+                    modifier = Modifier.padding(start = 12.dp)
+                )
+            }
+        }
     }
 }
 
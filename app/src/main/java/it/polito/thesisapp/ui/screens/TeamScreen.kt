@@ -31,6 +31,7 @@ import androidx.compose.runtime.Composable
 import androidx.compose.runtime.LaunchedEffect
 import androidx.compose.runtime.collectAsState
 import androidx.compose.runtime.getValue
+import androidx.compose.runtime.snapshotFlow
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.Color
@@ -38,13 +39,20 @@ import androidx.compose.ui.res.painterResource
 import androidx.compose.ui.unit.dp
 import androidx.hilt.navigation.compose.hiltViewModel
 import it.polito.thesisapp.R
+import it.polito.thesisapp.database.TaskOrder
 import it.polito.thesisapp.model.Task
 import it.polito.thesisapp.model.TaskStatus
 import it.polito.thesisapp.navigation.NavigationManager.NavigationEvent
 import it.polito.thesisapp.ui.LocalNavigationManager
 import it.polito.thesisapp.ui.components.LoadingIndicator
 import it.polito.thesisapp.ui.components.ScaffoldWithFab
+import it.polito.thesisapp.ui.components.UserMonogram
 import it.polito.thesisapp.viewmodel.TeamViewModel
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.filter
+
+// Number of items from the end of the task list at which the next page is requested
+private const val LOAD_MORE_THRESHOLD = 5
 
 /**
  * Composable function that displays the team screen.
@@ -64,6 +72,8 @@ fun TeamScreen(
     val sortMode by viewModel.taskSortMode.collectAsState()
     val sortedTasks by viewModel.sortedTasks.collectAsState()
     val selectedFilters by viewModel.selectedStatusFilters.collectAsState() // Get selected filters
+    val isLoadingPage by viewModel.isLoadingPage.collectAsState()
+    val memberProfiles by viewModel.memberProfiles.collectAsState()
     val lazyListState = rememberLazyListState()
     val navigationManager = LocalNavigationManager.current
 
@@ -76,6 +86,17 @@ fun TeamScreen(
         lazyListState.animateScrollToItem(0)
     }
 
+    // Load the next page of tasks when the end of the list is in view and no page is loading
+    LaunchedEffect(lazyListState) {
+        snapshotFlow {
+            val layoutInfo = lazyListState.layoutInfo
+            val lastVisibleIndex = layoutInfo.visibleItemsInfo.lastOrNull()?.index ?: 0
+            !isLoadingPage && lastVisibleIndex >= layoutInfo.totalItemsCount - LOAD_MORE_THRESHOLD
+        }.distinctUntilChanged()
+            .filter { it }
+            .collect { viewModel.loadNextPage() }
+    }
+
     ScaffoldWithFab(
         icon = Icons.Default.Add,
         contentDescription = "Create Task",
@@ -103,11 +124,24 @@ fun TeamScreen(
                         )
 
                         Text(
-                            text = currentTeam.members.size.toString() + " members",
+                            text = currentTeam.displayedMemberCount().toString() + " members",
                             style = MaterialTheme.typography.bodySmall,
                             modifier = Modifier.align(Alignment.End)
                         )
 
+                        Row(
+                            modifier = Modifier.horizontalScroll(rememberScrollState()),
+                            horizontalArrangement = Arrangement.spacedBy(4.dp)
+                        ) {
+                            memberProfiles.forEach { profile ->
+                                UserMonogram(
+                                    firstName = profile.firstName,
+                                    lastName = profile.lastName,
+                                    size = 32
+                                )
+                            }
+                        }
+
                         Spacer(modifier = Modifier.height(8.dp))
                         HorizontalDivider()
                         Spacer(modifier = Modifier.height(8.dp))
@@ -126,9 +160,9 @@ fun TeamScreen(
                         IconButton(onClick = { viewModel.toggleSortMode() }) {
                             Icon(
                                 painter = when (sortMode) {
-                                    TeamViewModel.TaskSortMode.DATE_DESC -> painterResource(R.drawable.sort_24)
-                                    TeamViewModel.TaskSortMode.NAME_ASC -> painterResource(R.drawable.arrow_upward_24)
-                                    TeamViewModel.TaskSortMode.NAME_DESC -> painterResource(R.drawable.arrow_downward_24)
+                                    TaskOrder.CREATION_DATE_DESC -> painterResource(R.drawable.sort_24)
+                                    TaskOrder.NAME_ASC -> painterResource(R.drawable.arrow_upward_24)
+                                    TaskOrder.NAME_DESC -> painterResource(R.drawable.arrow_downward_24)
                                 },
                                 contentDescription = "Sort tasks",
                                 tint = MaterialTheme.colorScheme.primary
@@ -139,6 +173,7 @@ fun TeamScreen(
                     // Add the FilterChipRow here
                     FilterChipRow(
                         selectedFilters = selectedFilters,
+                        taskCounts = team?.taskCounts.orEmpty(),
                         onFilterToggle = { viewModel.toggleStatusFilter(it) }
                     )
 
@@ -252,11 +287,13 @@ private fun TaskStatusChip(status: TaskStatus) {
  * Composable function that displays a row of filter chips for task statuses.
  *
  * @param selectedFilters The set of selected task statuses.
+ * @param taskCounts The number of tasks of the team by status, shown in the chips when known.
  * @param onFilterToggle Callback function to handle filter toggle.
  */
 @Composable
 private fun FilterChipRow(
     selectedFilters: Set<TaskStatus>,
+    taskCounts: Map<TaskStatus, Long>,
     onFilterToggle: (TaskStatus) -> Unit
 ) {
     Row(
@@ -270,7 +307,10 @@ private fun FilterChipRow(
             FilterChip(
                 selected = status in selectedFilters,
                 onClick = { onFilterToggle(status) },
-                label = { Text(status.displayName) },
+                label = {
+                    val count = taskCounts[status]
+                    Text(if (count != null) "${status.displayName} ($count)" else status.displayName)
+                },
                 colors = FilterChipDefaults.filterChipColors(
                     containerColor = MaterialTheme.colorScheme.surfaceVariant.copy(alpha = 0.5f),
                     selectedContainerColor = Color(status.color).copy(alpha = 0.7f),
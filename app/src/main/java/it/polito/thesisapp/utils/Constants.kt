@@ -10,6 +10,15 @@ object Constants {
         const val TEAM_MEMBERS = "members"
         const val TEAM_TASKS = "tasks"
         const val TASK_ASSIGNED_MEMBERS = "assignedMembers"
+        const val CONFIG = "config"
+    }
+
+    /**
+     * Object containing the IDs of the documents of the config collection
+     */
+    object FirestoreConfigDocuments {
+        // Flags of the profile search
+        const val PROFILE_SEARCH = "profileSearch"
     }
 
     /**
@@ -24,6 +33,10 @@ object Constants {
             const val LAST_NAME = "lastName"
             const val BIRTH_DATE = "birthDate"
             const val TEAMS = "teams"
+
+            // Normalized "first last" and "last first" names, used for prefix search
+            const val SEARCH_FIRST_LAST = "searchFirstLast"
+            const val SEARCH_LAST_FIRST = "searchLastFirst"
         }
 
         /**
@@ -35,6 +48,12 @@ object Constants {
             const val DESCRIPTION = "description"
             const val MEMBERS = "members"
             const val TASKS = "tasks"
+
+            // Map from task status name to the number of tasks of the team with that status
+            const val TASK_COUNTS = "taskCounts"
+
+            // Number of documents in the members subcollection, written when the team is created
+            const val MEMBER_COUNT = "memberCount"
         }
 
         /**
@@ -62,6 +81,14 @@ object Constants {
         object AssignedMember {
             const val MEMBER_REF = "memberRef"
         }
+
+        /**
+         * Fields specific to the profile search config document
+         */
+        object ProfileSearchConfig {
+            // Set while some profiles may lack the search fields, cleared by ProfileSearchMigration
+            const val LEGACY_PROFILES = "legacyProfiles"
+        }
     }
 
     /**
@@ -110,6 +137,15 @@ object Constants {
         }
     }
 
+    /**
+     * Object containing the address of the Firestore emulator
+     */
+    object Emulator {
+        // Host of the development machine as seen from the Android emulator
+        const val HOST = "10.0.2.2"
+        const val FIRESTORE_PORT = 8080
+    }
+
     /**
      * Object containing user-related constants
      */
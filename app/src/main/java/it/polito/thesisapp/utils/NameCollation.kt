@@ -0,0 +1,97 @@
+package it.polito.thesisapp.utils
+
+import java.text.CollationKey
+import java.text.Collator
+import java.util.Locale
+
+/**
+ * Locale-aware ordering of display names through cached collation keys.
+ *
+ * Comparing names with a [Collator] on every comparison is slow, while comparing their
+ * collation keys is a plain byte comparison. Keys are computed once per distinct name and
+ * kept in a bounded LRU cache, so a key is only computed again when a name changes, and
+ * [sort] looks them up once per item rather than on every comparison.
+ * Accented letters sort next to their base letter and case only breaks ties, unlike
+ * [String.compareTo] which sorts by UTF-16 code unit.
+ *
+ * @param locale Locale whose collation rules are applied
+ * @property maxSize Maximum number of keys kept in the cache
+ */
+class NameCollation(
+    locale: Locale = Locale.getDefault(),
+    private val maxSize: Int = DEFAULT_MAX_SIZE
+) {
+    private val collator = Collator.getInstance(locale).apply {
+        strength = Collator.TERTIARY
+        decomposition = Collator.CANONICAL_DECOMPOSITION
+    }
+
+    // Cached keys by name, in access order so that the least recently used is evicted first
+    private val keys = object : LinkedHashMap<String, CollationKey>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, CollationKey>?): Boolean =
+            size > maxSize
+    }
+
+    /**
+     * Number of collation keys computed so far, cache misses included and hits excluded.
+     */
+    var keysCreated = 0L
+        private set
+
+    /**
+     * Returns the collation key of a name, computing it only if it is not cached.
+     *
+     * @param name The name
+     * @return The collation key of the name
+     */
+    fun keyOf(name: String): CollationKey = synchronized(this) { cachedKeyOf(name) }
+
+    /**
+     * Sorts items by the collation keys of their names.
+     * The keys of every item are looked up once, under a single lock, before sorting, so
+     * each comparison is a plain comparison of precomputed keys.
+     *
+     * @param items The items to sort
+     * @param names Names of an item, compared in order until they differ
+     * @return The sorted items
+     */
+    fun <T> sort(items: Collection<T>, vararg names: (T) -> String): List<T> {
+        val keyed = synchronized(this) {
+            items.map { item -> item to names.map { name -> cachedKeyOf(name(item)) } }
+        }
+        return keyed.sortedWith { a, b -> compareKeys(a.second, b.second) }.map { it.first }
+    }
+
+    /**
+     * Returns the collation key of a name from the cache, computing it if missing.
+     * Must be called while holding the lock.
+     *
+     * @param name The name
+     * @return The collation key of the name
+     */
+    private fun cachedKeyOf(name: String): CollationKey =
+        keys.getOrPut(name) {
+            keysCreated++
+            collator.getCollationKey(name)
+        }
+
+    /**
+     * Compares two lists of keys of the same length in order until they differ.
+     *
+     * @return The result of the first comparison that differs, or 0
+     */
+    private fun compareKeys(a: List<CollationKey>, b: List<CollationKey>): Int {
+        for (i in a.indices) {
+            val result = a[i].compareTo(b[i])
+            if (result != 0) {
+                return result
+            }
+        }
+        return 0
+    }
+
+    companion object {
+        // Default number of keys kept in the cache
+        const val DEFAULT_MAX_SIZE = 10_000
+    }
+}
@@ -0,0 +1,31 @@
+package it.polito.thesisapp.utils
+
+import java.text.Normalizer
+import java.util.Locale
+
+/**
+ * Normalization of text for prefix search, shared by the profile search fields
+ * and the task search index, so that case and accents are ignored by both.
+ */
+object SearchText {
+
+    // Accents and other combining marks left by the canonical decomposition
+    private val COMBINING_MARKS = Regex("\\p{Mn}+")
+
+    // Runs of whitespace, collapsed into a single space
+    private val WHITESPACE = Regex("\\s+")
+
+    /**
+     * Normalizes a text for prefix search: accents are removed, letters are lowercased
+     * and whitespace is collapsed.
+     *
+     * @param text The text to normalize.
+     * @return The normalized text.
+     */
+    fun normalize(text: String): String =
+        Normalizer.normalize(text, Normalizer.Form.NFD)
+            .replace(COMBINING_MARKS, "")
+            .lowercase(Locale.ROOT)
+            .trim()
+            .replace(WHITESPACE, " ")
+}
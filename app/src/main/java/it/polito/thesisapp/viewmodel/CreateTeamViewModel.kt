@@ -1,76 +1,195 @@
 package it.polito.thesisapp.viewmodel
 
+import android.util.Log
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.google.firebase.firestore.FirebaseFirestore
 import dagger.hilt.android.lifecycle.HiltViewModel
 import it.polito.thesisapp.model.Profile
+import it.polito.thesisapp.repository.ProfileCache
 import it.polito.thesisapp.repository.ProfileRepository
+import it.polito.thesisapp.repository.ProfileSearchPage
 import it.polito.thesisapp.repository.TeamRepository
 import it.polito.thesisapp.utils.Constants
+import it.polito.thesisapp.utils.NameCollation
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.collectLatest
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
 import kotlinx.coroutines.launch
 import javax.inject.Inject
 
 /**
  * ViewModel for creating teams.
  *
+ * Members are picked from a paged prefix search instead of the whole profiles collection.
+ * Selected profiles stay pinned at the top of the list whatever the current search.
+ *
  * @property teamRepository The repository for managing team data.
  * @property profileRepository The repository for managing profile data.
+ * @property profileCache The cache resolving the profile of the current user.
  */
 @HiltViewModel
 class CreateTeamViewModel @Inject constructor(
     private val teamRepository: TeamRepository,
-    private val profileRepository: ProfileRepository
+    private val profileRepository: ProfileRepository,
+    private val profileCache: ProfileCache
 ) : ViewModel() {
 
     // MutableSharedFlow to emit events when a team is created.
     private val _teamCreated = MutableSharedFlow<Unit>()
     val teamCreated = _teamCreated
 
-    // StateFlow to hold all profiles
-    private val _allProfiles = MutableStateFlow<List<Profile>>(emptyList())
-    val allProfiles = _allProfiles
+    // StateFlow to hold the text typed in the search field
+    private val _searchQuery = MutableStateFlow("")
+    val searchQuery = _searchQuery
+
+    // StateFlow to hold the loaded pages of search results
+    private val _searchResults = MutableStateFlow<List<Profile>>(emptyList())
+
+    // StateFlow to hold the selected profiles, by ID
+    private val _selectedProfiles = MutableStateFlow<Map<String, Profile>>(emptyMap())
+
+    // StateFlow to hold the profiles to show: the selected ones first, then the search results
+    private val _profiles = MutableStateFlow<List<Profile>>(emptyList())
+    val profiles = _profiles
 
     // StateFlow to hold selected profile IDs
-    private val _selectedProfileIds = MutableStateFlow<Set<String>>(setOf())
+    private val _selectedProfileIds = MutableStateFlow<Set<String>>(setOf(Constants.User.USER_ID))
     val selectedProfileIds = _selectedProfileIds
 
     // StateFlow to track loading state
     private val _isLoading = MutableStateFlow(false)
     val isLoading = _isLoading
 
+    // StateFlow to track whether a page of search results is loading
+    private val _isSearching = MutableStateFlow(false)
+    val isSearching = _isSearching
+
+    // StateFlow to track whether more search results can be loaded
+    private val _hasMoreResults = MutableStateFlow(false)
+    val hasMoreResults = _hasMoreResults
+
+    // Locale-aware ordering of the selected profiles by name
+    private val nameCollation = NameCollation()
+
+    // Last page of the current search and the job loading the next one
+    private var lastPage: ProfileSearchPage? = null
+    private var nextPageJob: Job? = null
+
+    /**
+     * Initializes the ViewModel, searching again when the typed text settles
+     * and keeping the selected profiles pinned on top of the results.
+     */
+    init {
+        viewModelScope.launch {
+            _searchQuery.collectLatest { query ->
+                delay(SEARCH_DEBOUNCE_MS)
+                search(query)
+            }
+        }
+        viewModelScope.launch {
+            combine(_selectedProfiles, _searchResults) { selected, results ->
+                nameCollation.sort(selected.values, { it.firstName }, { it.lastName }) +
+                    results.filter { it.id !in selected }
+            }.distinctUntilChanged().collect { profiles ->
+                _profiles.value = profiles
+            }
+        }
+    }
+
     /**
-     * Loads all profiles from the repository.
+     * Loads the profile of the current user, which is always selected.
+     * The first search page is loaded by the search query collector.
      */
-    fun loadAllProfiles() {
+    fun loadProfiles() {
         viewModelScope.launch {
             try {
                 _isLoading.value = true
-                profileRepository.getAllProfilesFlow().collect { profiles ->
-                    _allProfiles.value = profiles
-                    if (_selectedProfileIds.value.isEmpty()) {
-                        _selectedProfileIds.value = setOf(Constants.User.USER_ID)
-                    }
-                    _isLoading.value = false
+                val currentUserRef = FirebaseFirestore.getInstance()
+                    .collection(Constants.FirestoreCollections.PROFILES)
+                    .document(Constants.User.USER_ID)
+                profileCache.resolve(listOf(currentUserRef))[Constants.User.USER_ID]?.let { profile ->
+                    _selectedProfiles.value += profile.id to profile
                 }
             } catch (e: Exception) {
+                Log.e(TAG, "Failed to load the current user", e)
+            } finally {
                 _isLoading.value = false
             }
         }
     }
 
+    /**
+     * Updates the search query. The search runs once the user stops typing.
+     *
+     * @param query The text typed by the user.
+     */
+    fun updateSearchQuery(query: String) {
+        _searchQuery.value = query
+    }
+
+    /**
+     * Loads the next page of search results, if there is one.
+     */
+    fun loadNextPage() {
+        val page = lastPage ?: return
+        if (!page.hasMore || nextPageJob?.isActive == true || _isSearching.value) {
+            return
+        }
+        nextPageJob = viewModelScope.launch {
+            loadPage(page.query, page)
+        }
+    }
+
+    /**
+     * Starts a new search, dropping the results of the previous one.
+     *
+     * @param query The text typed by the user.
+     */
+    private suspend fun search(query: String) {
+        nextPageJob?.cancel()
+        lastPage = null
+        _searchResults.value = emptyList()
+        loadPage(query, previous = null)
+    }
+
+    /**
+     * Loads a page of search results and appends it to the current ones.
+     *
+     * @param query The text typed by the user.
+     * @param previous The previous page of the same search, or null for the first one.
+     */
+    private suspend fun loadPage(query: String, previous: ProfileSearchPage?) {
+        _isSearching.value = true
+        try {
+            val page = profileRepository.searchProfiles(query, previous = previous)
+            lastPage = page
+            _searchResults.value = (_searchResults.value + page.profiles).distinctBy { it.id }
+            _hasMoreResults.value = page.hasMore
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to search profiles", e)
+        } finally {
+            _isSearching.value = false
+        }
+    }
+
     /**
      * Toggles the selection of a profile.
      *
-     * @param profileId The ID of the profile.
+     * @param profile The profile.
      * @param isSelected Whether the profile is selected.
      */
-    fun toggleProfileSelection(profileId: String, isSelected: Boolean) {
-        _selectedProfileIds.value = if (isSelected) {
-            _selectedProfileIds.value + profileId
+    fun toggleProfileSelection(profile: Profile, isSelected: Boolean) {
+        if (isSelected) {
+            _selectedProfiles.value += profile.id to profile
+            _selectedProfileIds.value += profile.id
         } else {
-            _selectedProfileIds.value - profileId
+            _selectedProfiles.value -= profile.id
+            _selectedProfileIds.value -= profile.id
         }
     }
 
@@ -99,4 +218,11 @@ class CreateTeamViewModel @Inject constructor(
             }
         }
     }
-}
\ No newline at end of file
+
+    companion object {
+        private const val TAG = "CreateTeamViewModel"
+
+        // Time the user has to stop typing before a search runs
+        private const val SEARCH_DEBOUNCE_MS = 300L
+    }
+}
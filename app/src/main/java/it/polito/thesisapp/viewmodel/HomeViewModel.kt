@@ -4,36 +4,52 @@ import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.google.firebase.firestore.DocumentReference
 import dagger.hilt.android.lifecycle.HiltViewModel
+import it.polito.thesisapp.database.TaskOrder
 import it.polito.thesisapp.model.Profile
 import it.polito.thesisapp.model.Task
-import it.polito.thesisapp.model.Team
-import it.polito.thesisapp.repository.ProfileRepository
-import it.polito.thesisapp.repository.TeamRepository
+import it.polito.thesisapp.model.TeamSummary
+import it.polito.thesisapp.repository.LocalMirror
+import it.polito.thesisapp.repository.TaskSearchIndex
+import it.polito.thesisapp.repository.TaskSearchResult
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.collectLatest
 import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.filterNotNull
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import javax.inject.Inject
 
 /**
  * ViewModel for the Home screen.
+ * Profile, teams and tasks are observed from the local mirror, which syncs them from Firestore.
+ * Every team of the user is only loaded as a summary; the tasks are only synced for the
+ * selected team and the teams of the pages around it, so that swiping to a neighbouring page
+ * shows its tasks right away. Teams far from the selected page stop being synced.
+ * While a task search is open, the tasks of every team are synced, so that the search index
+ * covers all of them.
  *
- * @property profileRepository The repository for managing profile data.
- * @property teamRepository The repository for managing team data.
+ * @property localMirror The local mirror of the profile, team and task data.
+ * @property taskSearchIndex The search index of the tasks of every synced team.
  */
 @HiltViewModel
 class HomeViewModel @Inject constructor(
-    private val profileRepository: ProfileRepository,
-    private val teamRepository: TeamRepository
+    private val localMirror: LocalMirror,
+    private val taskSearchIndex: TaskSearchIndex
 ) : ViewModel() {
 
     // StateFlow to hold the profile data
     private val _profile = MutableStateFlow<Profile?>(null)
     val profile: StateFlow<Profile?> = _profile
 
-    // StateFlow to hold the list of teams
-    private val _teams = MutableStateFlow<List<Team>>(emptyList())
-    val teams: StateFlow<List<Team>> = _teams
+    // StateFlow to hold the summaries of the teams shown by the pager
+    private val _teams = MutableStateFlow<List<TeamSummary>>(emptyList())
+    val teams: StateFlow<List<TeamSummary>> = _teams
 
     // StateFlow to track loading state
     private val _isLoading = MutableStateFlow(false)
@@ -54,33 +70,184 @@ class HomeViewModel @Inject constructor(
     private val _selectedTeamIndex = MutableStateFlow(0)
     val selectedTeamIndex = _selectedTeamIndex
 
+    // Job observing the profile, replaced if the profile is loaded again
+    private var profileJob: Job? = null
+
+    // IDs of the teams of the profile, in profile order, or null before the profile is loaded
+    private val _teamIds = MutableStateFlow<List<String>?>(null)
+
+    // One subscription per team of the profile, syncing the summary of the team
+    private val teamSubscriptions = SubscriptionManager<DocumentReference>(viewModelScope) { ref ->
+        localMirror.syncTeamSummary(ref).collect {
+            _isLoading.value = false
+        }
+    }
+
+    // Number of pages on each side of the selected one whose tasks are kept synced
+    private var prefetchRadius = DEFAULT_PREFETCH_RADIUS
+
+    // Teams whose tasks have been synced by a subscription that is still running
+    private val warmTeamIds = mutableSetOf<String>()
+
+    // One subscription per team whose tasks are kept synced: the selected one and its neighbours
+    private val prefetchSubscriptions = SubscriptionManager<String>(viewModelScope) { teamId ->
+        try {
+            localMirror.syncTeamTasks(teamId).collect {
+                warmTeamIds.add(teamId)
+            }
+        } finally {
+            warmTeamIds.remove(teamId)
+        }
+    }
+
+    // ID of the selected team when the prefetch window was last updated
+    private var lastSelectedTeamId: String? = null
+
+    /**
+     * Counters of the selected teams whose tasks were already synced or not.
+     */
+    val prefetchStats = PrefetchStats()
+
+    // StateFlow to hold the task search query, blank when no search is open
+    private val _searchQuery = MutableStateFlow("")
+    val searchQuery: StateFlow<String> = _searchQuery
+
+    // StateFlow to hold the tasks matching the search query, grouped by team
+    private val _searchResults = MutableStateFlow<List<TaskSearchResult>>(emptyList())
+    val searchResults: StateFlow<List<TaskSearchResult>> = _searchResults
+
+    // One subscription per team of the profile while a search is open, keeping its tasks indexed
+    private val searchSubscriptions = SubscriptionManager<String>(viewModelScope) { teamId ->
+        localMirror.syncTeamTasks(teamId).collect()
+    }
+
     /**
      * Initializes the ViewModel and sets up the task sorting logic.
+     * The tasks of the selected team are sorted by the local database, while the tasks
+     * of the teams around it are kept synced.
+     * While a search is open, the tasks of every team are synced and the search runs again
+     * whenever the query, the teams or the indexed tasks change.
      */
     init {
         viewModelScope.launch {
             combine(_teams, _taskSortMode, _selectedTeamIndex) { teams, sortMode, selectedIndex ->
-                val currentTeam = teams.getOrNull(selectedIndex)
-                sortTasks(currentTeam?.tasks ?: emptyList(), sortMode)
-            }.collect { sortedList ->
-                _sortedTasks.value = sortedList
+                teams.getOrNull(selectedIndex)?.id to sortMode
+            }.distinctUntilChanged().collectLatest { (teamId, sortMode) ->
+                if (teamId == null) {
+                    _sortedTasks.value = emptyList()
+                    return@collectLatest
+                }
+                localMirror.observeTasks(teamId, sortMode.toTaskOrder()).collect { sortedList ->
+                    _sortedTasks.value = sortedList
+                }
+            }
+        }
+        viewModelScope.launch {
+            _teamIds.filterNotNull().collectLatest { teamIds ->
+                localMirror.observeTeamSummaries(teamIds).collect { teams ->
+                    _teams.value = teams
+                    if (teams.isNotEmpty()) {
+                        _isLoading.value = false
+                    }
+                }
+            }
+        }
+        viewModelScope.launch {
+            combine(_teams, _selectedTeamIndex) { teams, selectedIndex ->
+                teams.map { it.id } to selectedIndex
+            }.distinctUntilChanged().collect { (teamIds, selectedIndex) ->
+                updatePrefetchWindow(teamIds, selectedIndex)
+            }
+        }
+        viewModelScope.launch {
+            combine(_searchQuery, _teams) { query, teams ->
+                if (query.isBlank()) emptyList() else teams.map { it.id }
+            }.distinctUntilChanged().collect { teamIds ->
+                searchSubscriptions.update(teamIds)
+            }
+        }
+        viewModelScope.launch {
+            combine(_searchQuery, _teams, taskSearchIndex.version) { query, teams, _ ->
+                query to teams.map { it.id }.toSet()
+            }.collectLatest { (query, teamIds) ->
+                if (query.isBlank()) {
+                    _searchResults.value = emptyList()
+                    return@collectLatest
+                }
+                delay(SEARCH_DEBOUNCE_MS)
+                _searchResults.value = withContext(Dispatchers.Default) {
+                    taskSearchIndex.search(query, teamIds)
+                }
             }
         }
     }
 
     /**
-     * Sorts the tasks based on the specified sort mode.
+     * Updates the task search query.
+     * The search runs once the typed text and the indexed tasks settle, over every team of the user.
      *
-     * @param tasks The list of tasks to be sorted.
-     * @param mode The sort mode to be applied.
-     * @return The sorted list of tasks.
+     * @param query The text typed by the user, blank to close the search.
      */
-    private fun sortTasks(tasks: List<Task>, mode: TaskSortMode): List<Task> {
-        return when (mode) {
-            TaskSortMode.DATE_DESC -> tasks.sortedByDescending { it.creationDate }
-            TaskSortMode.NAME_ASC -> tasks.sortedBy { it.name }
-            TaskSortMode.NAME_DESC -> tasks.sortedByDescending { it.name }
+    fun updateSearchQuery(query: String) {
+        _searchQuery.value = query
+    }
+
+    /**
+     * Sets the number of pages on each side of the selected one whose tasks are kept synced.
+     *
+     * @param radius The number of neighbouring pages, 0 to only sync the selected team.
+     */
+    fun setPrefetchRadius(radius: Int) {
+        require(radius >= 0) { "Prefetch radius must not be negative" }
+        prefetchRadius = radius
+        updatePrefetchWindow(_teams.value.map { it.id }, _selectedTeamIndex.value)
+    }
+
+    /**
+     * Starts syncing the tasks of the teams within [prefetchRadius] pages of the selected one
+     * and stops syncing the teams that moved more than [PREFETCH_KEEP_MARGIN] pages beyond it,
+     * so that swiping back and forth does not restart the subscriptions.
+     * Records whether a newly selected team was already synced.
+     *
+     * @param teamIds The IDs of the teams, in pager order.
+     * @param selectedIndex The index of the selected page.
+     */
+    private fun updatePrefetchWindow(teamIds: List<String>, selectedIndex: Int) {
+        val selectedTeamId = teamIds.getOrNull(selectedIndex)
+        if (selectedTeamId != null && lastSelectedTeamId != null && selectedTeamId != lastSelectedTeamId) {
+            if (selectedTeamId in warmTeamIds) prefetchStats.recordHit() else prefetchStats.recordMiss()
         }
+        lastSelectedTeamId = selectedTeamId
+
+        val keptIds = teamIds.withinPages(selectedIndex, prefetchRadius + PREFETCH_KEEP_MARGIN)
+        prefetchSubscriptions.update(
+            (prefetchSubscriptions.activeKeys intersect keptIds) +
+                teamIds.withinPages(selectedIndex, prefetchRadius)
+        )
+    }
+
+    /**
+     * Returns the IDs of the pages at most [radius] pages away from a page.
+     *
+     * @param index The index of the page.
+     * @param radius The maximum distance from the page.
+     * @return The IDs of the pages within the distance.
+     */
+    private fun List<String>.withinPages(index: Int, radius: Int): Set<String> {
+        val from = (index - radius).coerceIn(0, size)
+        val to = (index + radius + 1).coerceIn(from, size)
+        return subList(from, to).toSet()
+    }
+
+    /**
+     * Maps the sort mode to the order of the local task queries.
+     *
+     * @return The corresponding task order.
+     */
+    private fun TaskSortMode.toTaskOrder(): TaskOrder = when (this) {
+        TaskSortMode.DATE_DESC -> TaskOrder.CREATION_DATE_DESC
+        TaskSortMode.NAME_ASC -> TaskOrder.NAME_ASC
+        TaskSortMode.NAME_DESC -> TaskOrder.NAME_DESC
     }
 
     /**
@@ -100,10 +267,11 @@ class HomeViewModel @Inject constructor(
      * @param userId The ID of the user.
      */
     fun loadProfile(userId: String) {
-        viewModelScope.launch {
+        profileJob?.cancel()
+        profileJob = viewModelScope.launch {
             try {
                 _isLoading.value = true
-                profileRepository.getProfileFlow(userId).collect { profile ->
+                localMirror.observeProfile(userId).collect { profile ->
                     _profile.value = profile
                     loadTeams(profile?.teams ?: emptyList())
                 }
@@ -114,37 +282,17 @@ class HomeViewModel @Inject constructor(
     }
 
     /**
-     * Loads the teams for the specified list of team references.
+     * Loads the summaries of the teams for the specified list of team references.
+     * Called on every profile emission: the references are diffed against the subscribed ones,
+     * so only the added teams start being synced and only the removed ones stop.
      *
      * @param teamRefs The list of team document references.
      */
     private fun loadTeams(teamRefs: List<DocumentReference>) {
-        viewModelScope.launch {
-            try {
-                _teams.value = emptyList()
-                val teamsMap = mutableMapOf<String, Team>()
-
-                if (teamRefs.isEmpty()) {
-                    _isLoading.value = false
-                    return@launch
-                }
-
-                teamRefs.forEach { ref ->
-                    viewModelScope.launch {
-                        teamRepository.getTeamFlow(ref).collect { team ->
-                            if (team != null) {
-                                teamsMap[team.id] = team
-                            } else {
-                                teamsMap.remove(ref.id)
-                            }
-                            _teams.value = teamsMap.values.sortedBy { it.name }
-                            _isLoading.value = false
-                        }
-                    }
-                }
-            } catch (e: Exception) {
-                _isLoading.value = false
-            }
+        teamSubscriptions.update(teamRefs)
+        _teamIds.value = teamRefs.map { it.id }
+        if (teamRefs.isEmpty()) {
+            _isLoading.value = false
         }
     }
 
@@ -158,4 +306,15 @@ class HomeViewModel @Inject constructor(
             _selectedTeamIndex.value = index
         }
     }
+
+    companion object {
+        // Default number of pages on each side of the selected one whose tasks are kept synced
+        const val DEFAULT_PREFETCH_RADIUS = 1
+
+        // Number of pages beyond the prefetch radius a team stays synced before being dropped
+        const val PREFETCH_KEEP_MARGIN = 1
+
+        // Time the search query and the indexed tasks must settle before searching
+        private const val SEARCH_DEBOUNCE_MS = 300L
+    }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package it.polito.thesisapp.viewmodel
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counters of the pages selected with their data already prefetched or not.
+ */
+class PrefetchStats {
+    private val hits = AtomicLong(0)
+    private val misses = AtomicLong(0)
+
+    /**
+     * Number of pages selected after their data had been prefetched.
+     */
+    val hitCount: Long
+        get() = hits.get()
+
+    /**
+     * Number of pages selected before their data had been prefetched.
+     */
+    val missCount: Long
+        get() = misses.get()
+
+    /**
+     * Fraction of the selected pages that were prefetched, 0 if no page was selected.
+     */
+    val hitRate: Double
+        get() = (hitCount + missCount).let { if (it == 0L) 0.0 else hitCount.toDouble() / it }
+
+    /**
+     * Records the selection of a prefetched page.
+     */
+    fun recordHit() {
+        hits.incrementAndGet()
+    }
+
+    /**
+     * Records the selection of a page that was not prefetched.
+     */
+    fun recordMiss() {
+        misses.incrementAndGet()
+    }
+}
@@ -4,7 +4,7 @@ import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import dagger.hilt.android.lifecycle.HiltViewModel
 import it.polito.thesisapp.model.Profile
-import it.polito.thesisapp.repository.ProfileRepository
+import it.polito.thesisapp.repository.LocalMirror
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.launch
 import javax.inject.Inject
@@ -12,11 +12,11 @@ import javax.inject.Inject
 /**
  * ViewModel for managing profile data.
  *
- * @property profileRepository Repository for profile-related operations.
+ * @property localMirror Local mirror the profile is observed from.
  */
 @HiltViewModel
 class ProfileViewModel @Inject constructor(
-    private val profileRepository: ProfileRepository
+    private val localMirror: LocalMirror
 ) : ViewModel() {
 
     /**
@@ -40,7 +40,7 @@ class ProfileViewModel @Inject constructor(
         viewModelScope.launch {
             try {
                 _isLoading.value = true
-                profileRepository.getProfileFlow(userId).collect { profile ->
+                localMirror.observeProfile(userId).collect { profile ->
                     _profile.value = profile
                     _isLoading.value = false
                 }
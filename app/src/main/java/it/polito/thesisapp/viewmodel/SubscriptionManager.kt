@@ -0,0 +1,53 @@
+package it.polito.thesisapp.viewmodel
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
+
+/**
+ * Keeps one subscription running per key of a set that changes over time.
+ *
+ * Every [update] diffs the new keys against the subscribed ones: only the added keys are
+ * subscribed and only the removed keys are cancelled, so the keys present in both sets keep
+ * their running subscription however many times the set is updated.
+ *
+ * @property scope Scope the subscriptions run in
+ * @property subscribe Subscription run for a key until it is cancelled
+ */
+class SubscriptionManager<K>(
+    private val scope: CoroutineScope,
+    private val subscribe: suspend (K) -> Unit
+) {
+    // Running subscriptions by key
+    private val jobs = mutableMapOf<K, Job>()
+
+    /**
+     * Keys whose subscription is currently running.
+     */
+    val activeKeys: Set<K>
+        get() = synchronized(jobs) { jobs.filterValues { it.isActive }.keys.toSet() }
+
+    /**
+     * Replaces the subscribed keys, starting the subscriptions of the added keys and
+     * cancelling those of the removed keys. Subscriptions that ended on their own, e.g.
+     * after a failure, are started again if their key is still wanted.
+     *
+     * @param keys The keys that must be subscribed
+     */
+    fun update(keys: Collection<K>) {
+        val wanted = keys.toSet()
+        synchronized(jobs) {
+            (jobs.keys - wanted).forEach { key -> jobs.remove(key)?.cancel() }
+            wanted.filter { jobs[it]?.isActive != true }.forEach { key ->
+                jobs[key] = scope.launch { subscribe(key) }
+            }
+        }
+    }
+
+    /**
+     * Cancels all the subscriptions.
+     */
+    fun clear() {
+        update(emptyList())
+    }
+}
@@ -1,14 +1,22 @@
 package it.polito.thesisapp.viewmodel
 
+import android.os.SystemClock
 import android.util.Log
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
-import com.google.firebase.firestore.FirebaseFirestore
 import dagger.hilt.android.lifecycle.HiltViewModel
+import it.polito.thesisapp.model.Profile
 import it.polito.thesisapp.model.Task
 import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.repository.LocalMirror
+import it.polito.thesisapp.repository.ProfileCache
+import it.polito.thesisapp.repository.TaskMutationQueue
 import it.polito.thesisapp.repository.TeamRepository
 import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.collectLatest
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.launch
 import javax.inject.Inject
 
@@ -16,33 +24,73 @@ import javax.inject.Inject
  * ViewModel for managing tasks.
  *
  * @property teamRepository The repository for managing team data.
+ * @property localMirror The local mirror the task is observed from.
+ * @property mutationQueue The queue the task updates are written through.
+ * @property profileCache The cache resolving the profiles of the assigned members.
  */
 @HiltViewModel
 class TaskViewModel @Inject constructor(
-    private val teamRepository: TeamRepository
+    private val teamRepository: TeamRepository,
+    private val localMirror: LocalMirror,
+    private val mutationQueue: TaskMutationQueue,
+    private val profileCache: ProfileCache
 ) : ViewModel() {
 
-    // StateFlow to hold the task data
+    // StateFlow to hold the task data, read from the local mirror where queued status changes
+    // are applied as soon as they are enqueued
     private val _task = MutableStateFlow<Task?>(null)
-    val task = _task
+    val task: StateFlow<Task?> = _task
 
     // StateFlow to track loading state
     private val _isLoading = MutableStateFlow(false)
     val isLoading = _isLoading
 
+    // StateFlow to hold the error of the last failed status update
+    private val _statusError = MutableStateFlow<String?>(null)
+    val statusError = _statusError
+
+    // StateFlow to hold the write-to-acknowledge latency of the last status update,
+    // including the time spent queued while Firestore was unreachable
+    private val _statusWriteLatencyMillis = MutableStateFlow<Long?>(null)
+    val statusWriteLatencyMillis = _statusWriteLatencyMillis
+
+    // StateFlow to hold the profiles of the assigned members, in assignment order
+    private val _assignedProfiles = MutableStateFlow<List<Profile>>(emptyList())
+    val assignedProfiles = _assignedProfiles
+
+    // Number of status updates started, used to ignore the outcome of superseded ones
+    private var statusWriteGeneration = 0
+
+    /**
+     * Initializes the ViewModel and resolves the profiles of the assigned members
+     * whenever they change.
+     */
+    init {
+        viewModelScope.launch {
+            task.map { it?.assignedMembers.orEmpty() }
+                .distinctUntilChanged()
+                .collectLatest { refs ->
+                    profileCache.observeProfiles(refs).collect { profiles ->
+                        _assignedProfiles.value = refs.mapNotNull { profiles[it.id] }
+                    }
+                }
+        }
+    }
+
     /**
      * Loads the task data for the specified team and task IDs.
+     * Only the task itself is synced, not the whole team, and it is read from the local mirror.
      *
      * @param teamId The ID of the team.
      * @param taskId The ID of the task.
      */
     fun loadTask(teamId: String, taskId: String) {
         viewModelScope.launch {
-            _isLoading.value = true
-            val teamRef = FirebaseFirestore.getInstance().collection("teams").document(teamId)
-            teamRepository.getTeamFlow(teamRef).collect { team ->
-                val foundTask = team?.tasks?.find { it.id == taskId }
-                _task.value = foundTask
+            // Render the task already known by other screens right away, if any
+            _task.value = teamRepository.getCachedTask(teamId, taskId)
+            _isLoading.value = _task.value == null
+            localMirror.observeTask(teamId, taskId).collect { task ->
+                _task.value = task
                 _isLoading.value = false
             }
         }
@@ -50,22 +98,35 @@ class TaskViewModel @Inject constructor(
 
     /**
      * Updates the status of the specified task.
+     * The mutation queue applies the new status to the local mirror as soon as it is queued,
+     * so it shows immediately, and restores the stored status if the write is rejected.
+     * Later changes, including those of other members, reach the task through the mirror.
+     * Rapid changes are coalesced by the mutation queue, so only the last one is written.
      *
      * @param teamId The ID of the team.
      * @param taskId The ID of the task.
      * @param newStatus The new status of the task.
      */
     fun updateTaskStatus(teamId: String, taskId: String, newStatus: TaskStatus) {
+        val generation = ++statusWriteGeneration
+        _statusError.value = null
+
         viewModelScope.launch {
-            _isLoading.value = true
+            val startTime = SystemClock.elapsedRealtime()
             try {
-                teamRepository.updateTaskStatus(teamId, taskId, newStatus)
-                // Task is automatically updated through the flow
+                val written = mutationQueue.updateTaskStatus(teamId, taskId, newStatus)
+                written.await()
+                _statusWriteLatencyMillis.value = SystemClock.elapsedRealtime() - startTime
             } catch (e: Exception) {
-                e.message?.let { Log.e("ERROR", it) }
-            } finally {
-                _isLoading.value = false
+                Log.e(TAG, "Failed to update the status of task $taskId", e)
+                if (generation == statusWriteGeneration) {
+                    _statusError.value = e.message ?: "Could not update the task status"
+                }
             }
         }
     }
-}
\ No newline at end of file
+
+    companion object {
+        private const val TAG = "TaskViewModel"
+    }
+}
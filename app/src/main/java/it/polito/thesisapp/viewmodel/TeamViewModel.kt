@@ -3,24 +3,46 @@ package it.polito.thesisapp.viewmodel
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.Query
 import dagger.hilt.android.lifecycle.HiltViewModel
+import it.polito.thesisapp.database.TaskOrder
+import it.polito.thesisapp.model.Profile
 import it.polito.thesisapp.model.Task
 import it.polito.thesisapp.model.TaskStatus
 import it.polito.thesisapp.model.Team
+import it.polito.thesisapp.repository.PagedTaskSource
+import it.polito.thesisapp.repository.ProfileCache
+import it.polito.thesisapp.repository.TaskIndex
+import it.polito.thesisapp.repository.TaskMutationQueue
 import it.polito.thesisapp.repository.TeamRepository
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.collectLatest
 import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.launch
 import javax.inject.Inject
 
 /**
  * ViewModel for managing team data and tasks.
  *
+ * Unlike the other screens, the team screen does not read its tasks from the
+ * [it.polito.thesisapp.repository.LocalMirror]: mirroring a team syncs every one of its tasks,
+ * while the tasks are paged here so that only the pages scrolled to are read. The members are
+ * not mirrored either, so the team itself is also read from Firestore.
+ *
  * @property teamRepository The repository for managing team data.
+ * @property profileCache The cache resolving the profiles of the team members.
+ * @property mutationQueue The queue of the task updates not written yet.
  */
 @HiltViewModel
 class TeamViewModel @Inject constructor(
-    private val teamRepository: TeamRepository
+    private val teamRepository: TeamRepository,
+    private val profileCache: ProfileCache,
+    private val mutationQueue: TaskMutationQueue
 ) : ViewModel() {
 
 
@@ -32,11 +54,8 @@ class TeamViewModel @Inject constructor(
     private val _isLoading = MutableStateFlow(false)
     val isLoading = _isLoading
 
-    // Enum class for task sort modes
-    enum class TaskSortMode { DATE_DESC, NAME_ASC, NAME_DESC }
-
-    // StateFlow to hold the current task sort mode
-    private val _taskSortMode = MutableStateFlow(TaskSortMode.DATE_DESC)
+    // StateFlow to hold the current task sort order
+    private val _taskSortMode = MutableStateFlow(TaskOrder.CREATION_DATE_DESC)
     val taskSortMode = _taskSortMode
 
     // StateFlow to hold the sorted list of tasks
@@ -47,44 +66,143 @@ class TeamViewModel @Inject constructor(
     private val _selectedStatusFilters = MutableStateFlow(TaskStatus.entries.toSet())
     val selectedStatusFilters = _selectedStatusFilters
 
+    // StateFlow to hold the ID of the loaded team
+    private val _teamId = MutableStateFlow<String?>(null)
+
+    // Paged source of the team tasks, re-created when the team, sort mode or filters change
+    private var pagedTasks: PagedTaskSource? = null
+
+    // StateFlow to track whether a page of tasks is loading
+    private val _isLoadingPage = MutableStateFlow(false)
+    val isLoadingPage = _isLoadingPage
+
+    // StateFlow to hold the profiles of the team members, in member order
+    private val _memberProfiles = MutableStateFlow<List<Profile>>(emptyList())
+    val memberProfiles = _memberProfiles
+
     /**
      * Initializes the ViewModel and sets up the task sorting and filtering logic.
+     * Sorting and filtering are performed by the Firestore query of the paged tasks,
+     * and by a [TaskIndex] only if that query had to fall back because of a missing index.
+     * The profiles of the members are resolved whenever the members change.
      */
     init {
         viewModelScope.launch {
-            combine(_team, _taskSortMode, _selectedStatusFilters) { team, sortMode, filters ->
-                val tasks = team?.tasks ?: emptyList()
-                val filteredTasks = tasks.filter { it.status in filters }
-                sortTasks(filteredTasks, sortMode)
-            }.collect { sortedFilteredList ->
-                _sortedTasks.value = sortedFilteredList
+            combine(_teamId.filterNotNull(), _taskSortMode, _selectedStatusFilters) { teamId, sortMode, filters ->
+                Triple(teamId, sortMode, filters)
+            }.collectLatest { (teamId, sortMode, filters) ->
+                collectTasks(teamId, sortMode, filters)
             }
         }
+        viewModelScope.launch {
+            _team.map { team -> team?.members.orEmpty().mapNotNull { it.profileRef } }
+                .distinctUntilChanged()
+                .collectLatest { refs ->
+                    profileCache.observeProfiles(refs).collect { profiles ->
+                        _memberProfiles.value = refs.mapNotNull { profiles[it.id] }
+                    }
+                }
+        }
     }
 
     /**
-     * Sorts the tasks based on the specified sort mode.
+     * Opens a paged task source for the given sort order and filters and publishes its tasks
+     * until the collection is cancelled.
+     * If the source falls back to the unsorted tasks, they are kept in a [TaskIndex], so that
+     * each snapshot only updates the tasks that changed instead of re-sorting all of them.
+     * The fallback source loads every task of the team, and they are only published once all
+     * of them are loaded, so the list does not reorder while pages arrive.
+     * Status changes not written yet are shown over the tasks read from Firestore.
      *
-     * @param tasks The list of tasks to be sorted.
-     * @param mode The sort mode to be applied.
-     * @return The sorted list of tasks.
+     * @param teamId The ID of the team.
+     * @param sortMode The sort order to be applied.
+     * @param filters The statuses of the tasks to show.
      */
-    private fun sortTasks(tasks: List<Task>, mode: TaskSortMode): List<Task> {
-        return when (mode) {
-            TaskSortMode.DATE_DESC -> tasks.sortedByDescending { it.creationDate }
-            TaskSortMode.NAME_ASC -> tasks.sortedBy { it.name }
-            TaskSortMode.NAME_DESC -> tasks.sortedByDescending { it.name }
+    private suspend fun collectTasks(teamId: String, sortMode: TaskOrder, filters: Set<TaskStatus>) {
+        pagedTasks?.close()
+        pagedTasks = null
+
+        if (filters.isEmpty()) {
+            _sortedTasks.value = emptyList()
+            _isLoadingPage.value = false
+            return
+        }
+
+        val source = when (sortMode) {
+            TaskOrder.CREATION_DATE_DESC -> teamRepository.getPagedTasks(
+                teamId, Constants.FirestoreFields.Task.CREATION_DATE, Query.Direction.DESCENDING, filters
+            )
+
+            TaskOrder.NAME_ASC -> teamRepository.getPagedTasks(
+                teamId, Constants.FirestoreFields.Task.NAME, Query.Direction.ASCENDING, filters
+            )
+
+            TaskOrder.NAME_DESC -> teamRepository.getPagedTasks(
+                teamId, Constants.FirestoreFields.Task.NAME, Query.Direction.DESCENDING, filters
+            )
+        }
+        pagedTasks = source
+        val taskIndex = TaskIndex()
+
+        coroutineScope {
+            launch {
+                combine(
+                    source.isLoadingPage,
+                    source.usesFallback,
+                    source.endReached
+                ) { isLoadingPage, usesFallback, endReached ->
+                    isLoadingPage || (usesFallback && !endReached)
+                }.collect { _isLoadingPage.value = it }
+            }
+            combine(source.tasks, source.usesFallback, source.endReached) { tasks, usesFallback, endReached ->
+                when {
+                    !usesFallback -> tasks
+                    // A partial set cannot be sorted correctly, wait for the last page
+                    !endReached -> null
+                    else -> {
+                        taskIndex.replaceAll(tasks)
+                        taskIndex.view(sortMode, filters)
+                    }
+                }
+            }.filterNotNull()
+                .combine(mutationQueue.pendingStatuses(teamId)) { tasks, pendingStatuses ->
+                    tasks.withPendingStatuses(pendingStatuses, filters)
+                }
+                .collect { tasks ->
+                    _sortedTasks.value = tasks
+                }
         }
     }
 
     /**
-     * Toggles the task sort mode.
+     * Shows the status changes not written yet over the tasks read from Firestore,
+     * dropping the tasks whose new status is filtered out.
+     *
+     * @param pendingStatuses The pending status of each task, keyed by task ID
+     * @param filters The statuses of the tasks to show
+     * @return The tasks to show
+     */
+    private fun List<Task>.withPendingStatuses(
+        pendingStatuses: Map<String, TaskStatus>,
+        filters: Set<TaskStatus>
+    ): List<Task> {
+        if (pendingStatuses.isEmpty()) {
+            return this
+        }
+        return mapNotNull { task ->
+            val status = pendingStatuses[task.id] ?: return@mapNotNull task
+            task.copy(status = status).takeIf { status in filters }
+        }
+    }
+
+    /**
+     * Toggles the task sort order.
      */
     fun toggleSortMode() {
         _taskSortMode.value = when (_taskSortMode.value) {
-            TaskSortMode.DATE_DESC -> TaskSortMode.NAME_ASC
-            TaskSortMode.NAME_ASC -> TaskSortMode.NAME_DESC
-            TaskSortMode.NAME_DESC -> TaskSortMode.DATE_DESC
+            TaskOrder.CREATION_DATE_DESC -> TaskOrder.NAME_ASC
+            TaskOrder.NAME_ASC -> TaskOrder.NAME_DESC
+            TaskOrder.NAME_DESC -> TaskOrder.CREATION_DATE_DESC
         }
     }
 
@@ -104,17 +222,39 @@ class TeamViewModel @Inject constructor(
 
     /**
      * Loads the team data for the specified team ID.
+     * Tasks are loaded page by page, see [loadNextPage].
      *
      * @param teamId The ID of the team.
      */
     fun loadTeam(teamId: String) {
         viewModelScope.launch {
-            _isLoading.value = true
-            val teamRef = FirebaseFirestore.getInstance().collection("teams").document(teamId)
-            teamRepository.getTeamFlow(teamRef).collect { team ->
+            // Render the team shared by other screens right away, if already loaded
+            _team.value = teamRepository.getCachedTeam(teamId)
+            _isLoading.value = _team.value == null
+            val teamRef = FirebaseFirestore.getInstance()
+                .collection(Constants.FirestoreCollections.TEAMS)
+                .document(teamId)
+            teamRepository.getTeamInfoFlow(teamRef).collect { team ->
                 _team.value = team
                 _isLoading.value = false
             }
         }
+
+        _teamId.value = teamId
+    }
+
+    /**
+     * Loads the next page of tasks, if there is one.
+     */
+    fun loadNextPage() {
+        pagedTasks?.loadNextPage()
+    }
+
+    /**
+     * Removes the listeners of the paged tasks when the ViewModel is destroyed.
+     */
+    override fun onCleared() {
+        pagedTasks?.close()
+        super.onCleared()
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package it.polito.thesisapp
+
+import org.junit.Assume.assumeTrue
+
+/**
+ * Switch for the timing benchmarks in the unit tests.
+ *
+ * Wall-clock measurements depend on the machine and on whatever else it is running, so they
+ * are skipped by the regular test run and only executed on request with
+ * `./gradlew testDebugUnitTest -Pbenchmarks`. The gating tests assert deterministic work
+ * counts instead.
+ */
+object Benchmarks {
+
+    // System property set by the build when the benchmarks are requested
+    private const val ENABLED_PROPERTY = "thesisapp.benchmarks"
+
+    /**
+     * Skips the calling test unless the benchmarks were requested.
+     */
+    fun assumeEnabled() {
+        assumeTrue(
+            "Benchmarks run only with -Pbenchmarks",
+            System.getProperty(ENABLED_PROPERTY).toBoolean()
+        )
+    }
+}
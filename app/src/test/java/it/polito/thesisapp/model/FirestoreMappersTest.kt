@@ -0,0 +1,157 @@
+package it.polito.thesisapp.model
+
+import com.google.firebase.Timestamp
+import com.google.firebase.firestore.util.CustomClassMapper
+import it.polito.thesisapp.Benchmarks
+import it.polito.thesisapp.utils.Constants
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Unit tests and benchmark for the hand-written Firestore mappers of the models.
+ * The benchmark only runs on request, see [Benchmarks].
+ */
+class FirestoreMappersTest {
+
+    private fun profileData(index: Int): Map<String, Any> = mapOf(
+        Constants.FirestoreFields.Profile.FIRST_NAME to "First $index",
+        Constants.FirestoreFields.Profile.LAST_NAME to "Last $index",
+        Constants.FirestoreFields.Profile.BIRTH_DATE to Timestamp(index.toLong(), 0),
+        Constants.FirestoreFields.Profile.TEAMS to emptyList<Any>()
+    )
+
+    private fun taskData(index: Int): Map<String, Any> = mapOf(
+        Constants.FirestoreFields.Task.NAME to "Task $index",
+        Constants.FirestoreFields.Task.DESCRIPTION to "Description of task $index",
+        Constants.FirestoreFields.Task.CREATION_DATE to Timestamp(index.toLong(), 0),
+        Constants.FirestoreFields.Task.STATUS to TaskStatus.entries[index % TaskStatus.entries.size].name,
+        Constants.FirestoreFields.Task.ASSIGNED_MEMBERS to emptyList<Any>()
+    )
+
+    @Test
+    fun profile_roundTripsThroughFirestoreData() {
+        val profile = Profile.fromFirestore("p1", profileData(1))
+
+        assertEquals("First 1", profile.firstName)
+        assertEquals(Timestamp(1, 0), profile.birthDate)
+        assertEquals(profile, Profile.fromFirestore("p1", profile.toFirestore()))
+    }
+
+    @Test
+    fun task_roundTripsThroughFirestoreData() {
+        val task = Task.fromFirestore("t1", taskData(1))
+
+        assertEquals(TaskStatus.IN_PROGRESS, task.status)
+        assertEquals(task, Task.fromFirestore("t1", task.toFirestore()))
+    }
+
+    @Test
+    fun team_roundTripsThroughFirestoreData() {
+        val team = Team(
+            id = "team1",
+            name = "Team",
+            description = "Description",
+            taskCounts = TaskStatus.entries.associateWith { it.ordinal.toLong() },
+            memberCount = 3
+        )
+
+        assertEquals(team, Team.fromFirestore("team1", team.toFirestore()))
+    }
+
+    @Test
+    fun team_withoutMemberCountField_hasUnknownMemberCount() {
+        val data = Team(name = "Team").toFirestore()
+
+        assertFalse(data.containsKey(Constants.FirestoreFields.Team.MEMBER_COUNT))
+        assertNull(Team.fromFirestore("team1", data).memberCount)
+    }
+
+    @Test
+    fun teamMember_withoutProfileRef_leavesTheFieldOut() {
+        val data = TeamMember(role = "ADMIN").toFirestore()
+
+        assertEquals(mapOf(Constants.FirestoreFields.TeamMember.ROLE to "ADMIN"), data)
+        assertEquals(TeamMember(role = "ADMIN"), TeamMember.fromFirestore(data))
+    }
+
+    @Test
+    fun profile_matchesReflectionMapping() {
+        val data = profileData(7)
+
+        assertEquals(
+            CustomClassMapper.convertToCustomClass(data, Profile::class.java, null).copy(id = "p7"),
+            Profile.fromFirestore("p7", data)
+        )
+    }
+
+    @Test
+    fun task_matchesReflectionMapping() {
+        val data = taskData(7)
+
+        assertEquals(
+            CustomClassMapper.convertToCustomClass(data, Task::class.java, null).copy(id = "t7"),
+            Task.fromFirestore("t7", data)
+        )
+    }
+
+    /**
+     * Compares the per-document cost of the reflection-based mapping used by
+     * DocumentSnapshot.toObject with the hand-written mapper of the same model,
+     * on synthetic profiles and tasks.
+     * Skipped unless the benchmarks are requested, see [Benchmarks].
+     */
+    @Test
+    fun benchmark_mappingCostPerDocument() {
+        Benchmarks.assumeEnabled()
+
+        assertDirectMappingIsCheaper(
+            "Profile",
+            (0 until DOCUMENTS).map { profileData(it) },
+            { CustomClassMapper.convertToCustomClass(it, Profile::class.java, null) },
+            { id, data -> Profile.fromFirestore(id, data) }
+        )
+        assertDirectMappingIsCheaper(
+            "Task",
+            (0 until DOCUMENTS).map { taskData(it) },
+            { CustomClassMapper.convertToCustomClass(it, Task::class.java, null) },
+            { id, data -> Task.fromFirestore(id, data) }
+        )
+    }
+
+    /**
+     * Times the reflection-based and the hand-written mapping of the same documents,
+     * after warming up both, and checks that the hand-written one is cheaper.
+     */
+    private fun assertDirectMappingIsCheaper(
+        model: String,
+        documents: List<Map<String, Any>>,
+        reflection: (Map<String, Any>) -> Any,
+        direct: (String, Map<String, Any>) -> Any
+    ) {
+        documents.take(WARMUP).forEach {
+            reflection(it)
+            direct("", it)
+        }
+
+        val reflectionStart = System.nanoTime()
+        documents.forEach { reflection(it) }
+        val reflectionNanos = (System.nanoTime() - reflectionStart) / documents.size
+
+        val directStart = System.nanoTime()
+        documents.forEachIndexed { index, data -> direct(index.toString(), data) }
+        val directNanos = (System.nanoTime() - directStart) / documents.size
+
+        assertTrue(
+            "$model mapping: reflection $reflectionNanos ns/doc, direct $directNanos ns/doc",
+            directNanos < reflectionNanos
+        )
+    }
+
+    companion object {
+        private const val DOCUMENTS = 100_000
+        private const val WARMUP = 10_000
+    }
+}
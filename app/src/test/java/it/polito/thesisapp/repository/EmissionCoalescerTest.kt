@@ -0,0 +1,74 @@
+package it.polito.thesisapp.repository
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Unit tests for [EmissionCoalescer].
+ */
+class EmissionCoalescerTest {
+
+    private lateinit var stats: EmissionStats
+    private lateinit var coalescer: EmissionCoalescer
+
+    @Before
+    fun setUp() {
+        stats = EmissionStats()
+        coalescer = EmissionCoalescer(stats)
+    }
+
+    /**
+     * Emits through the coalescer when it allows it, like the repository does.
+     */
+    private fun emitIf(allowed: Boolean) {
+        if (allowed) {
+            coalescer.recordEmission()
+        }
+    }
+
+    @Test
+    fun snapshotWithChildLoads_isEmittedOnceWhenAllResolve() {
+        val taskIds = (1..50).map { "task$it" }
+
+        emitIf(coalescer.onSnapshot(taskIds))
+        taskIds.forEach { emitIf(coalescer.onChildLoaded(it)) }
+
+        assertEquals(1, stats.snapshotCount)
+        assertEquals(1.0, stats.emissionsPerSnapshot, 0.0)
+    }
+
+    @Test
+    fun snapshotWithoutChildLoads_isEmittedImmediately() {
+        assertTrue(coalescer.onSnapshot(emptyList()))
+    }
+
+    @Test
+    fun deadline_releasesHeldEmissionOnlyForCurrentGeneration() {
+        coalescer.onSnapshot(listOf("a", "b"))
+        val first = coalescer.generation
+        coalescer.onSnapshot(listOf("c"))
+
+        assertFalse(coalescer.onDeadline(first))
+        assertTrue(coalescer.onDeadline(coalescer.generation))
+        assertFalse(coalescer.isHolding)
+    }
+
+    @Test
+    fun cancelingLastPendingLoad_releasesHeldEmission() {
+        coalescer.onSnapshot(listOf("a", "b"))
+        coalescer.onChildLoaded("a")
+
+        assertTrue(coalescer.cancel("b"))
+    }
+
+    @Test
+    fun childUpdateAfterRelease_isEmittedAsLiveUpdate() {
+        coalescer.onSnapshot(listOf("a"))
+        coalescer.onChildLoaded("a")
+
+        assertTrue(coalescer.onChildLoaded("a"))
+    }
+}
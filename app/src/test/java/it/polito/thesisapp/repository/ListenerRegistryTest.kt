@@ -0,0 +1,120 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.ListenerRegistration
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Unit tests for [ListenerRegistry].
+ */
+class ListenerRegistryTest {
+
+    /**
+     * Fake registration that keeps track of how many listeners are still attached.
+     */
+    private inner class FakeRegistration : ListenerRegistration {
+        private var removed = false
+
+        init {
+            attached++
+        }
+
+        override fun remove() {
+            if (!removed) {
+                removed = true
+                attached--
+            }
+        }
+    }
+
+    private var attached = 0
+    private var registrations = 0
+    private lateinit var registry: ListenerRegistry
+
+    private val teamPath = listOf("teams")
+    private val membersPath = teamPath + "members"
+    private val tasksPath = membersPath + "tasks"
+
+    @Before
+    fun setUp() {
+        attached = 0
+        registrations = 0
+        registry = ListenerRegistry(onRegister = { registrations++ })
+    }
+
+    /**
+     * Simulates one full cascade of the team flow: members and tasks listeners
+     * plus one assigned members listener per task.
+     */
+    private fun fireCascade(taskIds: List<String>) {
+        registry.register(membersPath, FakeRegistration())
+        registry.register(tasksPath, FakeRegistration())
+        registry.retainChildren(tasksPath, taskIds.toSet())
+        taskIds.forEach { registry.register(tasksPath + it, FakeRegistration()) }
+    }
+
+    @Test
+    fun listenerCount_staysBounded_acrossRepeatedParentUpdates() {
+        val taskIds = (1..20).map { "task$it" }
+        registry.register(teamPath, FakeRegistration())
+
+        repeat(100) { fireCascade(taskIds) }
+
+        // team + members + tasks + one per task
+        assertEquals(3 + taskIds.size, registry.size)
+        assertEquals(registry.size, attached)
+    }
+
+    @Test
+    fun retainChildren_removesListenersOfDeletedTasks() {
+        registry.register(teamPath, FakeRegistration())
+        fireCascade(listOf("a", "b", "c"))
+
+        registry.retainChildren(tasksPath, setOf("a"))
+
+        assertEquals(4, registry.size)
+        assertEquals(4, attached)
+    }
+
+    @Test
+    fun remove_removesWholeSubtree() {
+        registry.register(teamPath, FakeRegistration())
+        fireCascade(listOf("a", "b"))
+
+        registry.remove(membersPath)
+
+        assertEquals(1, registry.size)
+        assertEquals(1, attached)
+    }
+
+    @Test
+    fun close_removesEverythingAndRejectsLateRegistrations() {
+        registry.register(teamPath, FakeRegistration())
+        fireCascade(listOf("a", "b"))
+
+        registry.close()
+        registry.register(tasksPath + "c", FakeRegistration())
+
+        assertEquals(0, registry.size)
+        assertEquals(0, attached)
+    }
+
+    @Test
+    fun contains_allowsAttachingChildListenersOnlyOnce() {
+        registry.register(tasksPath, FakeRegistration())
+        val taskIds = listOf("a", "b", "c")
+
+        repeat(10) {
+            registry.retainChildren(tasksPath, taskIds.toSet())
+            taskIds.forEach { id ->
+                if (tasksPath + id !in registry) {
+                    registry.register(tasksPath + id, FakeRegistration())
+                }
+            }
+        }
+
+        assertEquals(1 + taskIds.size, registrations)
+        assertEquals(1 + taskIds.size, attached)
+    }
+}
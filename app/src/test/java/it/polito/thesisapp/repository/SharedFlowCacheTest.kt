@@ -0,0 +1,92 @@
+package it.polito.thesisapp.repository
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+/**
+ * Unit tests for [SharedFlowCache].
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class SharedFlowCacheTest {
+
+    @Test
+    fun upstreamError_isRethrownToEveryCollector_andEvictsTheKey() = runTest {
+        val cache = SharedFlowCache<Int>(backgroundScope, LINGER_MILLIS)
+        val upstream = MutableSharedFlow<Int>(replay = 1)
+        var starts = 0
+        val errors = mutableListOf<String?>()
+        repeat(2) {
+            backgroundScope.launch {
+                try {
+                    cache.get(KEY) {
+                        starts++
+                        upstream.map { check(it >= 0) { "Negative value" }; it }
+                    }.collect {}
+                } catch (e: IllegalStateException) {
+                    errors.add(e.message)
+                }
+            }
+        }
+        runCurrent()
+        upstream.emit(1)
+        runCurrent()
+        assertEquals(1, starts)
+        assertEquals(1, cache.cached(KEY))
+        assertEquals(2, cache.subscriberCount(KEY))
+
+        upstream.emit(-1)
+        runCurrent()
+        assertEquals(listOf("Negative value", "Negative value"), errors)
+        assertNull(cache.cached(KEY))
+        assertEquals(0, cache.size)
+    }
+
+    @Test
+    fun keyWithoutSubscribers_isDroppedAfterTheLinger() = runTest {
+        val cache = SharedFlowCache<Int>(backgroundScope, LINGER_MILLIS)
+        var starts = 0
+        val create = {
+            flow {
+                starts++
+                emit(starts)
+                awaitCancellation()
+            }
+        }
+
+        val first = backgroundScope.launch { cache.get(KEY, create).collect {} }
+        runCurrent()
+        first.cancel()
+        advanceTimeBy(LINGER_MILLIS / 2)
+
+        // Coming back within the linger reuses the running upstream
+        val second = backgroundScope.launch { cache.get(KEY, create).collect {} }
+        runCurrent()
+        assertEquals(1, starts)
+        second.cancel()
+
+        advanceUntilIdle()
+        assertEquals(0, cache.size)
+        assertNull(cache.cached(KEY))
+
+        backgroundScope.launch { cache.get(KEY, create).collect {} }
+        runCurrent()
+        assertEquals(2, starts)
+        assertEquals(2, cache.cached(KEY))
+    }
+
+    companion object {
+        private const val KEY = "team1"
+        private const val LINGER_MILLIS = 5_000L
+    }
+}
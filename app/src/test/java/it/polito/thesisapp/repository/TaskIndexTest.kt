@@ -0,0 +1,218 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.Timestamp
+import it.polito.thesisapp.Benchmarks
+import it.polito.thesisapp.database.TaskOrder
+import it.polito.thesisapp.model.Task
+import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.utils.NameCollation
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Locale
+import kotlin.random.Random
+
+/**
+ * Unit tests and benchmark for [TaskIndex].
+ * The benchmark only runs on request, see [Benchmarks].
+ */
+class TaskIndexTest {
+
+    private fun task(index: Int, status: TaskStatus = TaskStatus.entries[index % TaskStatus.entries.size]) = Task(
+        id = "task$index",
+        name = "Task ${(index * 7919) % 100_000}",
+        description = "Description of task $index",
+        creationDate = Timestamp(index.toLong(), 0),
+        status = status
+    )
+
+    private val nameCollation = NameCollation()
+
+    private val nameOrder = compareBy<Task> { nameCollation.keyOf(it.name) }
+
+    /**
+     * Expected content of a view: the filtered tasks fully sorted, names by their collation.
+     */
+    private fun expected(tasks: Collection<Task>, order: TaskOrder, statuses: Set<TaskStatus>): List<Task> {
+        val filtered = tasks.filter { it.status in statuses }
+        return when (order) {
+            TaskOrder.CREATION_DATE_DESC -> filtered.sortedByDescending { it.creationDate }
+            TaskOrder.NAME_ASC -> filtered.sortedWith(nameOrder)
+            TaskOrder.NAME_DESC -> filtered.sortedWith(nameOrder.reversed())
+        }
+    }
+
+    /**
+     * Previous implementation: filters and fully sorts the list, like the ViewModels did.
+     */
+    private fun sortTasks(tasks: Collection<Task>, order: TaskOrder, statuses: Set<TaskStatus>): List<Task> {
+        val filtered = tasks.filter { it.status in statuses }
+        return when (order) {
+            TaskOrder.CREATION_DATE_DESC -> filtered.sortedByDescending { it.creationDate }
+            TaskOrder.NAME_ASC -> filtered.sortedBy { it.name }
+            TaskOrder.NAME_DESC -> filtered.sortedByDescending { it.name }
+        }
+    }
+
+    @Test
+    fun views_matchFullSort_afterRandomUpdates() {
+        val random = Random(42)
+        val index = TaskIndex()
+        val reference = mutableMapOf<String, Task>()
+
+        repeat(5_000) {
+            val id = random.nextInt(500)
+            if (random.nextInt(4) == 0) {
+                index.remove("task$id")
+                reference.remove("task$id")
+            } else {
+                val task = task(id, TaskStatus.entries.random(random))
+                index.upsert(task)
+                reference[task.id] = task
+            }
+        }
+
+        val filters = listOf(TaskStatus.entries.toSet(), setOf(TaskStatus.TODO), setOf(TaskStatus.TODO, TaskStatus.DONE))
+        TaskOrder.entries.forEach { order ->
+            filters.forEach { statuses ->
+                assertEquals(expected(reference.values, order, statuses), index.view(order, statuses))
+            }
+        }
+    }
+
+    @Test
+    fun nameViews_followLocaleCollation() {
+        val index = TaskIndex(NameCollation(Locale.ITALIAN))
+        listOf("Zeno", "élia", "Elio", "andrea", "Bruno", "Èrica").forEachIndexed { i, name ->
+            index.upsert(task(i).copy(name = name))
+        }
+
+        assertEquals(
+            listOf("andrea", "Bruno", "élia", "Elio", "Èrica", "Zeno"),
+            index.view(TaskOrder.NAME_ASC).map { it.name }
+        )
+    }
+
+    @Test
+    fun replaceAll_onlyChangesModifiedTasks() {
+        val index = TaskIndex()
+        val tasks = (0 until 100).map { task(it) }
+        assertTrue(index.replaceAll(tasks))
+        val view = index.view(TaskOrder.NAME_ASC)
+
+        assertFalse(index.replaceAll(tasks))
+        assertSame(view, index.view(TaskOrder.NAME_ASC))
+
+        val updated = tasks.drop(1).toMutableList()
+        updated[0] = updated[0].copy(status = TaskStatus.DONE)
+        assertTrue(index.replaceAll(updated))
+        assertEquals(99, index.size)
+        assertEquals(TaskStatus.DONE, index[updated[0].id]?.status)
+        assertEquals(expected(updated, TaskOrder.NAME_ASC, TaskStatus.entries.toSet()), index.view(TaskOrder.NAME_ASC))
+    }
+
+    /**
+     * Checks that a single status change in a large team costs O(log n) comparisons per view,
+     * while filtering and re-sorting the whole list, as sortTasks did, costs O(n log n).
+     */
+    @Test
+    fun statusChange_comparesLogarithmicallyManyTasks() {
+        val tasks = statusChangeTasks()
+        val index = TaskIndex().apply { replaceAll(tasks.values) }
+        var sortComparisons = 0L
+        val countingOrder = Comparator<Task> { a, b ->
+            sortComparisons++
+            nameOrder.compare(a, b)
+        }
+
+        val updates = statusChangeUpdates(tasks)
+        val comparisonsBefore = index.comparisons
+        updates.forEach { task ->
+            tasks[task.id] = task
+            index.upsert(task)
+            index.view(TaskOrder.NAME_ASC, STATUS_CHANGE_FILTER)
+            tasks.values.filter { it.status in STATUS_CHANGE_FILTER }.sortedWith(countingOrder)
+        }
+        val indexComparisons = (index.comparisons - comparisonsBefore) / updates.size
+
+        // Each view removes and adds the entry, each walking at most the height of a red-black tree
+        val treeHeight = 2 * (32 - Integer.numberOfLeadingZeros(TASK_COUNT + 1))
+        assertTrue(
+            "Index $indexComparisons comparisons/change, bound ${TaskOrder.entries.size * 2 * treeHeight}",
+            indexComparisons <= TaskOrder.entries.size * 2 * treeHeight
+        )
+        assertTrue(sortComparisons / updates.size > TASK_COUNT / 2)
+        assertEquals(
+            expected(tasks.values, TaskOrder.NAME_ASC, STATUS_CHANGE_FILTER),
+            index.view(TaskOrder.NAME_ASC, STATUS_CHANGE_FILTER)
+        )
+    }
+
+    /**
+     * Compares the time of the status changes of [statusChange_comparesLogarithmicallyManyTasks]:
+     * filtering and re-sorting the whole list against updating the index and reading its view.
+     * Skipped unless the benchmarks are requested, see [Benchmarks].
+     */
+    @Test
+    fun benchmark_statusChangeCost() {
+        Benchmarks.assumeEnabled()
+
+        val order = TaskOrder.NAME_ASC
+        val tasks = statusChangeTasks()
+        val index = TaskIndex().apply { replaceAll(tasks.values) }
+        val updates = statusChangeUpdates(tasks)
+
+        // Warm up both paths before measuring
+        repeat(WARMUP) {
+            sortTasks(tasks.values, order, STATUS_CHANGE_FILTER)
+            index.upsert(updates[it % updates.size])
+            index.view(order, STATUS_CHANGE_FILTER)
+        }
+
+        val sortStart = System.nanoTime()
+        updates.forEach { task ->
+            tasks[task.id] = task
+            sortTasks(tasks.values, order, STATUS_CHANGE_FILTER)
+        }
+        val sortNanos = (System.nanoTime() - sortStart) / updates.size
+
+        val indexStart = System.nanoTime()
+        updates.forEach { task ->
+            index.upsert(task)
+            index.view(order, STATUS_CHANGE_FILTER)
+        }
+        val indexNanos = (System.nanoTime() - indexStart) / updates.size
+
+        assertEquals(expected(tasks.values, order, STATUS_CHANGE_FILTER), index.view(order, STATUS_CHANGE_FILTER))
+        assertTrue(
+            "Full re-sort $sortNanos ns/change, index update and view $indexNanos ns/change ($TASK_COUNT tasks)",
+            indexNanos < sortNanos
+        )
+    }
+
+    /**
+     * Builds the tasks of the large team of the status change tests, by ID.
+     */
+    private fun statusChangeTasks(): LinkedHashMap<String, Task> =
+        (0 until TASK_COUNT).map { task(it) }.associateByTo(LinkedHashMap()) { it.id }
+
+    /**
+     * Builds the same sequence of random status changes on every call.
+     */
+    private fun statusChangeUpdates(tasks: Map<String, Task>): List<Task> {
+        val random = Random(7)
+        return (0 until STATUS_CHANGES).map {
+            val id = "task${random.nextInt(TASK_COUNT)}"
+            tasks.getValue(id).copy(status = TaskStatus.entries.random(random))
+        }
+    }
+
+    companion object {
+        private const val TASK_COUNT = 5_000
+        private const val STATUS_CHANGES = 1_000
+        private const val WARMUP = 200
+        private val STATUS_CHANGE_FILTER = setOf(TaskStatus.TODO, TaskStatus.IN_PROGRESS)
+    }
+}
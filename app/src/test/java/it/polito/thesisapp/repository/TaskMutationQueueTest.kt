@@ -0,0 +1,121 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.FirebaseFirestoreException
+import com.google.firebase.firestore.Transaction
+import io.mockk.every
+import io.mockk.mockk
+import it.polito.thesisapp.database.PendingMutationDao
+import it.polito.thesisapp.database.PendingMutationEntity
+import it.polito.thesisapp.database.TaskDao
+import it.polito.thesisapp.model.TaskStatus
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import com.google.android.gms.tasks.Task as GmsTask
+
+/**
+ * Tests that [TaskMutationQueue] hands control back once an update is queued and keeps
+ * retrying a flush while Firestore is unavailable.
+ * Firestore is faked: each transaction returns the next of the given outcomes.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class TaskMutationQueueTest {
+
+    /**
+     * In-memory queue of pending mutations, one row per task field.
+     */
+    private class FakePendingMutationDao : PendingMutationDao {
+        val rows = mutableMapOf<Triple<String, String, String>, PendingMutationEntity>()
+
+        override suspend fun getAll() = rows.values.sortedBy { it.sequence }
+        override fun observeCount(): Flow<Int> = flowOf(rows.size)
+        override suspend fun getTeamMutations(teamId: String, field: String) =
+            rows.values.filter { it.teamId == teamId && it.field == field }
+        override fun observeTeamMutations(teamId: String, field: String) = flowOf(emptyList<PendingMutationEntity>())
+        override suspend fun upsert(mutation: PendingMutationEntity) {
+            rows[Triple(mutation.teamId, mutation.taskId, mutation.field)] = mutation
+        }
+        override suspend fun delete(teamId: String, taskId: String, field: String, sequence: Long) {
+            val key = Triple(teamId, taskId, field)
+            if (rows[key]?.sequence == sequence) rows.remove(key)
+        }
+    }
+
+    private val dao = FakePendingMutationDao()
+    private val db = mockk<FirebaseFirestore>(relaxed = true)
+
+    // Number of transactions run so far
+    private var transactions = 0
+
+    @Test
+    fun unavailableFirestore_isRetriedWithBackoff_andTheCallerIsNotBlocked() = runTest {
+        fakeTransactions(unavailable(), unavailable(), written())
+        val queue = TaskMutationQueue(dao, mockk<TaskDao>(relaxed = true), db, backgroundScope, flushDelayMillis = 0)
+
+        // Returns as soon as the update is stored, before any write
+        val written = queue.updateTaskStatus(TEAM_ID, TASK_ID, TaskStatus.DONE)
+        assertEquals(1, dao.rows.size)
+        assertFalse(written.isCompleted)
+
+        runCurrent()
+        assertEquals(1, transactions)
+
+        // First retry after the initial delay, the second one after twice that delay
+        advanceTimeBy(TaskMutationQueue.INITIAL_RETRY_DELAY_MILLIS + 1)
+        assertEquals(2, transactions)
+        assertFalse(written.isCompleted)
+        advanceTimeBy(TaskMutationQueue.INITIAL_RETRY_DELAY_MILLIS + 1)
+        assertEquals(2, transactions)
+        advanceTimeBy(TaskMutationQueue.INITIAL_RETRY_DELAY_MILLIS)
+        assertEquals(3, transactions)
+
+        assertTrue(written.isCompleted)
+        assertTrue(dao.rows.isEmpty())
+
+        // Nothing is retried once the queue is empty
+        advanceUntilIdle()
+        assertEquals(3, transactions)
+    }
+
+    /**
+     * Makes the transactions return the given outcomes, in order.
+     */
+    private fun fakeTransactions(vararg outcomes: GmsTask<Set<PendingMutationEntity>>) {
+        every { db.runTransaction(any<Transaction.Function<Set<PendingMutationEntity>>>()) } answers {
+            outcomes[transactions++]
+        }
+    }
+
+    /**
+     * A transaction that failed because Firestore could not be reached.
+     */
+    private fun unavailable(): GmsTask<Set<PendingMutationEntity>> = mockk {
+        every { isComplete } returns true
+        every { isCanceled } returns false
+        every { exception } returns FirebaseFirestoreException("Offline", FirebaseFirestoreException.Code.UNAVAILABLE)
+    }
+
+    /**
+     * A transaction that wrote every mutation.
+     */
+    private fun written(): GmsTask<Set<PendingMutationEntity>> = mockk {
+        every { isComplete } returns true
+        every { isCanceled } returns false
+        every { exception } returns null
+        every { result } returns emptySet()
+    }
+
+    companion object {
+        private const val TEAM_ID = "team1"
+        private const val TASK_ID = "task1"
+    }
+}
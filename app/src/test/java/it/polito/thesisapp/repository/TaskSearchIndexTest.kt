@@ -0,0 +1,194 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.Timestamp
+import it.polito.thesisapp.Benchmarks
+import it.polito.thesisapp.model.Task
+import it.polito.thesisapp.model.TaskStatus
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+/**
+ * Unit tests and benchmark for [TaskSearchIndex].
+ * The benchmark only runs on request, see [Benchmarks].
+ */
+class TaskSearchIndexTest {
+
+    private fun task(id: String, name: String, description: String = "") = Task(
+        id = id,
+        name = name,
+        description = description,
+        creationDate = Timestamp(0, 0)
+    )
+
+    /**
+     * Returns the IDs of the matching tasks, by team, in result order.
+     */
+    private fun TaskSearchIndex.ids(query: String, teamIds: Set<String>? = null): List<Pair<String, List<String>>> =
+        search(query, teamIds).map { result -> result.teamId to result.tasks.map { it.id } }
+
+    @Test
+    fun search_matchesEveryTermAsPrefix_ignoringCaseAndAccents() {
+        val index = TaskSearchIndex()
+        index.upsert("team1", task("t1", "Fix login bug", "Users cannot log in on Android"))
+        index.upsert("team1", task("t2", "Design login screen"))
+        index.upsert("team2", task("t3", "Città report", "Fix the figures"))
+
+        assertEquals(listOf("team1" to listOf("t1")), index.ids("log fix"))
+        assertEquals(listOf("team2" to listOf("t3")), index.ids("CITTA"))
+        assertEquals(listOf("team1" to listOf("t2", "t1")), index.ids("login"))
+        assertEquals(emptyList<Pair<String, List<String>>>(), index.ids("login report"))
+        assertEquals(emptyList<Pair<String, List<String>>>(), index.ids("  ,. "))
+    }
+
+    @Test
+    fun search_ranksNameAboveDescription_andGroupsByTeam() {
+        val index = TaskSearchIndex()
+        index.upsert("team1", task("t1", "Write docs", "Mention the release"))
+        index.upsert("team2", task("t2", "Release notes"))
+        index.upsert("team1", task("t3", "Release build"))
+        index.upsert("team2", task("t4", "Releases page"))
+
+        assertEquals(
+            listOf("team1" to listOf("t3", "t1"), "team2" to listOf("t2", "t4")),
+            index.ids("release")
+        )
+        assertEquals(listOf("team2" to listOf("t2", "t4")), index.ids("release", setOf("team2")))
+    }
+
+    @Test
+    fun updatesAndRemovals_onlyChangeTheAffectedTasks() {
+        val index = TaskSearchIndex()
+        index.upsert("team1", task("t1", "Old name"))
+        index.upsert("team1", task("t2", "Other task"))
+
+        index.upsert("team1", task("t1", "New name"))
+        assertEquals(emptyList<Pair<String, List<String>>>(), index.ids("old"))
+        assertEquals(listOf("team1" to listOf("t1")), index.ids("new"))
+
+        // A change of a field that is not searched keeps the task matching
+        assertTrue(index.upsert("team1", task("t1", "New name").copy(status = TaskStatus.DONE)))
+        assertEquals(TaskStatus.DONE, index.search("new").single().tasks.single().status)
+        assertFalse(index.upsert("team1", task("t1", "New name").copy(status = TaskStatus.DONE)))
+
+        assertTrue(index.remove("team1", "t1"))
+        assertFalse(index.remove("team1", "t1"))
+        assertEquals(emptyList<Pair<String, List<String>>>(), index.ids("name"))
+        assertEquals(1, index.size)
+    }
+
+    @Test
+    fun replaceTeam_dropsMissingTasksOfThatTeamOnly() {
+        val index = TaskSearchIndex()
+        index.upsert("team1", task("t1", "Shared task"))
+        index.upsert("team1", task("t2", "Shared task"))
+        index.upsert("team2", task("t1", "Shared task"))
+        val version = index.version.value
+
+        assertTrue(index.replaceTeam("team1", listOf(task("t2", "Shared task"))))
+        assertEquals(listOf("team1" to listOf("t2"), "team2" to listOf("t1")), index.ids("shared"))
+        assertEquals(version + 1, index.version.value)
+        assertFalse(index.replaceTeam("team1", listOf(task("t2", "Shared task"))))
+    }
+
+    @Test
+    fun search_onlyScansThePostingsOfTheMostSelectiveTerm() {
+        val index = TaskSearchIndex()
+        repeat(1_000) { i -> index.upsert("team1", task("common$i", "Common chore")) }
+        repeat(3) { i -> index.upsert("team1", task("rare$i", "Common rare chore")) }
+
+        assertEquals(listOf("team1" to listOf("rare0", "rare1", "rare2")), index.ids("comm rare"))
+        assertEquals(3L, index.postingsScanned)
+        assertEquals(3L, index.candidatesScored)
+    }
+
+    @Test
+    fun singleTermSearch_skipsCandidatesScoringBelowTheKeptHits() {
+        val index = TaskSearchIndex()
+        repeat(TaskSearchIndex.DEFAULT_LIMIT) { i -> index.upsert("team1", task("name$i", "Deploy $i")) }
+        repeat(1_000) { i -> index.upsert("team1", task("description$i", "Chore $i", "Deploy the app")) }
+
+        val results = index.search("deploy").single().tasks
+
+        assertEquals(TaskSearchIndex.DEFAULT_LIMIT, results.size)
+        assertTrue(results.all { it.id.startsWith("name") })
+        assertEquals(TaskSearchIndex.DEFAULT_LIMIT + 1_000L, index.postingsScanned)
+        assertEquals(TaskSearchIndex.DEFAULT_LIMIT.toLong(), index.candidatesScored)
+    }
+
+    /**
+     * Measures the latency of typical queries over 100k tasks spread over 50 teams,
+     * and the cost of keeping the index up to date with single task changes,
+     * and checks that the 99th percentile query stays within [P99_BOUND_MICROS].
+     * Skipped unless the benchmarks are requested, see [Benchmarks].
+     */
+    @Test
+    fun benchmark_queryLatencyAt100kTasks() {
+        Benchmarks.assumeEnabled()
+
+        val random = Random(3)
+        val words = List(VOCABULARY) { i ->
+            (1..(3 + i % 6)).map { 'a' + random.nextInt(26) }.joinToString("")
+        }
+        val sentence = { length: Int -> List(length) { words[random.nextInt(words.size)] }.joinToString(" ") }
+
+        val index = TaskSearchIndex()
+        val buildStart = System.nanoTime()
+        repeat(TASKS) { i ->
+            index.upsert("team${i % TEAMS}", task("task$i", sentence(4), sentence(16)))
+        }
+        val buildMillis = (System.nanoTime() - buildStart) / 1_000_000
+
+        val queries = List(QUERIES) {
+            when (it % 3) {
+                0 -> words[random.nextInt(words.size)].take(2)
+                1 -> words[random.nextInt(words.size)].take(3) + " " + words[random.nextInt(words.size)].take(2)
+                else -> words[random.nextInt(words.size)]
+            }
+        }
+
+        // Warm up before measuring
+        repeat(WARMUP_ROUNDS) { queries.forEach { index.search(it) } }
+
+        // Latency of each query is its median over a few runs, so that a single preempted run
+        // does not count as a slow query
+        val latencies = queries.map { query ->
+            List(RUNS_PER_QUERY) {
+                val start = System.nanoTime()
+                index.search(query)
+                System.nanoTime() - start
+            }.sorted()[RUNS_PER_QUERY / 2]
+        }.sorted()
+        val medianMicros = latencies[latencies.size / 2] / 1_000
+        val p99Micros = latencies[latencies.size * 99 / 100] / 1_000
+
+        val updateStart = System.nanoTime()
+        repeat(UPDATES) {
+            val i = random.nextInt(TASKS)
+            index.upsert("team${i % TEAMS}", task("task$i", sentence(4), sentence(16)))
+        }
+        val updateMicros = (System.nanoTime() - updateStart) / UPDATES / 1_000
+
+        assertEquals(TASKS, index.size)
+        assertTrue(
+            "Task search: query median $medianMicros µs, p99 $p99Micros µs, " +
+                    "task update $updateMicros µs, index built in $buildMillis ms ($TASKS tasks, $TEAMS teams)",
+            p99Micros < P99_BOUND_MICROS
+        )
+    }
+
+    companion object {
+        private const val TASKS = 100_000
+        private const val TEAMS = 50
+        private const val VOCABULARY = 20_000
+        private const val QUERIES = 300
+        private const val UPDATES = 10_000
+        private const val WARMUP_ROUNDS = 3
+        private const val RUNS_PER_QUERY = 5
+
+        // Bound on the 99th percentile query latency, a few milliseconds
+        private const val P99_BOUND_MICROS = 5_000L
+    }
+}
@@ -0,0 +1,145 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.Timestamp
+import com.google.firebase.firestore.DocumentChange
+import it.polito.thesisapp.Benchmarks
+import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.utils.Constants
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Unit tests and benchmark for [TaskStore].
+ * The benchmark only runs on request, see [Benchmarks].
+ */
+class TaskStoreTest {
+
+    private lateinit var store: TaskStore
+
+    /**
+     * Builds the Firestore data of a synthetic task.
+     */
+    private fun taskData(index: Int, status: TaskStatus = TaskStatus.TODO): Map<String, Any> = mapOf(
+        Constants.FirestoreFields.Task.NAME to "Task $index",
+        Constants.FirestoreFields.Task.DESCRIPTION to "Description of task $index",
+        Constants.FirestoreFields.Task.CREATION_DATE to Timestamp(1_700_000_000L + index, 0),
+        Constants.FirestoreFields.Task.STATUS to status.name,
+        Constants.FirestoreFields.Task.ASSIGNED_MEMBERS to emptyList<Any>()
+    )
+
+    private fun added(index: Int) =
+        TaskStore.Change(DocumentChange.Type.ADDED, "task$index", taskData(index))
+
+    private fun modified(index: Int, status: TaskStatus) =
+        TaskStore.Change(DocumentChange.Type.MODIFIED, "task$index", taskData(index, status))
+
+    private fun removed(index: Int) =
+        TaskStore.Change(DocumentChange.Type.REMOVED, "task$index")
+
+    @Before
+    fun setUp() {
+        store = TaskStore()
+    }
+
+    @Test
+    fun apply_addsModifiesAndRemovesTasks() {
+        store.apply((0 until 3).map { added(it) })
+        store.apply(listOf(modified(1, TaskStatus.DONE), removed(2)))
+
+        assertEquals(listOf("task0", "task1"), store.tasks.map { it.id })
+        assertEquals(TaskStatus.DONE, store.tasks[1].status)
+    }
+
+    @Test
+    fun apply_reusesUnchangedTaskInstances() {
+        store.apply((0 until 3).map { added(it) })
+        val before = store.tasks
+
+        store.apply(listOf(modified(1, TaskStatus.IN_PROGRESS)))
+        val after = store.tasks
+
+        assertSame(before[0], after[0])
+        assertSame(before[2], after[2])
+        assertEquals(TaskStatus.IN_PROGRESS, after[1].status)
+    }
+
+    @Test
+    fun apply_withoutActualChanges_keepsSameList() {
+        store.apply((0 until 3).map { added(it) })
+        val before = store.tasks
+
+        val changed = store.apply(listOf(modified(1, TaskStatus.TODO)))
+
+        assertFalse(changed)
+        assertSame(before, store.tasks)
+    }
+
+    /**
+     * Replays a stream of 100 snapshots with 1% churn over 10k tasks and checks that each update
+     * maps and replaces only the changed documents, whatever the size of the team.
+     */
+    @Test
+    fun apply_updateWorkScalesWithChanges() {
+        store.apply((0 until TEAM_SIZE).map { added(it) })
+        assertEquals(TEAM_SIZE.toLong(), store.mappedDocuments)
+
+        repeat(UPDATES) { update ->
+            val before = store.tasks
+            val mappedBefore = store.mappedDocuments
+
+            store.apply(churnedChanges(update))
+            val after = store.tasks
+
+            assertEquals(CHURN.toLong(), store.mappedDocuments - mappedBefore)
+            assertEquals(CHURN, before.indices.count { before[it] !== after[it] })
+        }
+        assertEquals(TEAM_SIZE, store.tasks.size)
+    }
+
+    /**
+     * Times the same stream as [apply_updateWorkScalesWithChanges].
+     * Skipped unless the benchmarks are requested, see [Benchmarks].
+     */
+    @Test
+    fun benchmark_updateCostScalesWithChanges() {
+        Benchmarks.assumeEnabled()
+
+        val initialStart = System.nanoTime()
+        store.apply((0 until TEAM_SIZE).map { added(it) })
+        store.tasks
+        val initialNanos = System.nanoTime() - initialStart
+
+        val updatesStart = System.nanoTime()
+        repeat(UPDATES) { update ->
+            store.apply(churnedChanges(update))
+            store.tasks
+        }
+        val perUpdateNanos = (System.nanoTime() - updatesStart) / UPDATES
+
+        // 1% churn maps 100 times fewer documents than the initial load, allow a wide margin
+        assertTrue(
+            "Initial load ${initialNanos / 1_000} us, update with $CHURN changes ${perUpdateNanos / 1_000} us",
+            perUpdateNanos * 10 < initialNanos
+        )
+    }
+
+    /**
+     * Builds the changes of the given update: [CHURN] tasks moved to a status they are not in.
+     */
+    private fun churnedChanges(update: Int): List<TaskStore.Change> {
+        val statuses = TaskStatus.entries
+        return (0 until CHURN).map { i ->
+            modified((update * CHURN + i) % TEAM_SIZE, statuses[(update % (statuses.size - 1)) + 1])
+        }
+    }
+
+    companion object {
+        private const val TEAM_SIZE = 10_000
+        private const val CHURN = TEAM_SIZE / 100
+        private const val UPDATES = 100
+    }
+}
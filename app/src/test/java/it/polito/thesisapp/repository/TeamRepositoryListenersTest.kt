@@ -0,0 +1,260 @@
+package it.polito.thesisapp.repository
+
+import com.google.firebase.Timestamp
+import com.google.firebase.firestore.CollectionReference
+import com.google.firebase.firestore.DocumentChange
+import com.google.firebase.firestore.DocumentReference
+import com.google.firebase.firestore.DocumentSnapshot
+import com.google.firebase.firestore.EventListener
+import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.ListenerRegistration
+import com.google.firebase.firestore.QueryDocumentSnapshot
+import com.google.firebase.firestore.QuerySnapshot
+import io.mockk.every
+import io.mockk.mockk
+import it.polito.thesisapp.model.Team
+import it.polito.thesisapp.model.TaskStatus
+import it.polito.thesisapp.utils.Constants
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.resetMain
+import kotlinx.coroutines.test.runTest
+import kotlinx.coroutines.test.setMain
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests that the team flows of [TeamRepository] keep a bounded number of Firestore listeners
+ * while the team, its members and its tasks keep changing.
+ * Firestore is faked: the snapshot listeners are captured and fed snapshots by the test.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class TeamRepositoryListenersTest {
+
+    /**
+     * Fake registration that keeps track of how many listeners are still attached.
+     */
+    private inner class FakeRegistration : ListenerRegistration {
+        private var removed = false
+
+        init {
+            attached++
+        }
+
+        override fun remove() {
+            if (!removed) {
+                removed = true
+                attached--
+            }
+        }
+    }
+
+    private var attached = 0
+
+    private val db = mockk<FirebaseFirestore>(relaxed = true)
+    private val teamRef = mockk<DocumentReference>()
+    private val tasksCollection = mockk<CollectionReference>()
+    private val membersCollection = mockk<CollectionReference>()
+
+    private var teamListener: EventListener<DocumentSnapshot>? = null
+    private var tasksListener: EventListener<QuerySnapshot>? = null
+    private var membersListener: EventListener<QuerySnapshot>? = null
+
+    @Before
+    fun setUp() {
+        Dispatchers.setMain(UnconfinedTestDispatcher())
+
+        every { teamRef.id } returns TEAM_ID
+        every { teamRef.addSnapshotListener(any<EventListener<DocumentSnapshot>>()) } answers {
+            teamListener = firstArg()
+            FakeRegistration()
+        }
+
+        every { teamRef.collection(Constants.FirestoreCollections.TEAM_TASKS) } returns tasksCollection
+        every { tasksCollection.addSnapshotListener(any<EventListener<QuerySnapshot>>()) } answers {
+            tasksListener = firstArg()
+            FakeRegistration()
+        }
+
+        every { teamRef.collection(Constants.FirestoreCollections.TEAM_MEMBERS) } returns membersCollection
+        every { membersCollection.addSnapshotListener(any<EventListener<QuerySnapshot>>()) } answers {
+            membersListener = firstArg()
+            FakeRegistration()
+        }
+    }
+
+    @After
+    fun tearDown() {
+        Dispatchers.resetMain()
+    }
+
+    @Test
+    fun getTeamFlow_keepsListenerCountBounded_acrossTeamAndTaskUpdates() = runTest {
+        val repository = TeamRepository(scope = backgroundScope, teamFlowLingerMillis = 0, db = db)
+        var latest: Team? = null
+        val collector = backgroundScope.launch {
+            repository.getTeamFlow(teamRef).collect { latest = it }
+        }
+        advanceUntilIdle()
+
+        // Half of the initial tasks were not migrated and need an assigned members listener each
+        val legacyIds = (0 until INITIAL_TASKS step 2).map { "task$it" }.toMutableSet()
+        val taskIds = (0 until INITIAL_TASKS).map { "task$it" }.toMutableList()
+        emitTeam(0)
+        emitTasks(taskIds.map { added(it, TaskStatus.TODO, legacy = it in legacyIds) })
+        advanceUntilIdle()
+        assertEquals(2 + legacyIds.size, repository.activeListenerCount)
+
+        var nextTaskId = INITIAL_TASKS
+        repeat(UPDATES) { update ->
+            emitTeam(update + 1)
+            val modifiedId = taskIds[update % taskIds.size]
+            val changes = mutableListOf(
+                modified(modifiedId, TaskStatus.entries[update % TaskStatus.entries.size], legacyIds)
+            )
+            if (update % 10 == 0) {
+                // A legacy task is deleted and a new one is created
+                val removedId = legacyIds.first { it != modifiedId }
+                legacyIds.remove(removedId)
+                taskIds.remove(removedId)
+                changes.add(removed(removedId))
+
+                val addedId = "task${nextTaskId++}"
+                legacyIds.add(addedId)
+                taskIds.add(addedId)
+                changes.add(added(addedId, TaskStatus.TODO, legacy = true))
+            }
+            emitTasks(changes)
+            advanceUntilIdle()
+
+            assertEquals(2 + legacyIds.size, repository.activeListenerCount)
+            assertEquals(repository.activeListenerCount, attached)
+        }
+
+        assertEquals(taskIds.size, latest?.tasks?.size)
+
+        collector.cancel()
+        advanceUntilIdle()
+        assertEquals(0, repository.activeListenerCount)
+        assertEquals(0, attached)
+    }
+
+    @Test
+    fun getTeamInfoFlow_keepsListenerCountBounded_acrossMemberUpdates() = runTest {
+        val repository = TeamRepository(scope = backgroundScope, teamFlowLingerMillis = 0, db = db)
+        var latest: Team? = null
+        val collector = backgroundScope.launch {
+            repository.getTeamInfoFlow(teamRef).collect { latest = it }
+        }
+        advanceUntilIdle()
+
+        repeat(UPDATES) { update ->
+            emitTeam(update)
+            emitMembers(update % 5 + 1)
+            advanceUntilIdle()
+
+            // One listener on the team document and one on the members subcollection
+            assertEquals(2, repository.activeListenerCount)
+            assertEquals(2, attached)
+        }
+        assertEquals((UPDATES - 1) % 5 + 1, latest?.members?.size)
+        assertEquals(2, repository.listenerRegistrationCount)
+
+        collector.cancel()
+        advanceUntilIdle()
+        assertEquals(0, attached)
+    }
+
+    /**
+     * Sends a snapshot of the team document with a different description on each update.
+     */
+    private fun emitTeam(update: Int) {
+        val snapshot = mockk<DocumentSnapshot>()
+        every { snapshot.exists() } returns true
+        every { snapshot.id } returns TEAM_ID
+        every { snapshot.data } returns mapOf(
+            Constants.FirestoreFields.Team.NAME to "Team",
+            Constants.FirestoreFields.Team.DESCRIPTION to "Update $update",
+            Constants.FirestoreFields.Team.MEMBER_COUNT to 3L,
+            Constants.FirestoreFields.Team.TASK_COUNTS to TaskStatus.entries.associate { it.name to 0L }
+        )
+        teamListener!!.onEvent(snapshot, null)
+    }
+
+    /**
+     * Sends a snapshot of the tasks subcollection with the given changes.
+     */
+    private fun emitTasks(changes: List<DocumentChange>) {
+        val snapshot = mockk<QuerySnapshot>()
+        every { snapshot.documentChanges } returns changes
+        every { snapshot.isEmpty } returns false
+        tasksListener!!.onEvent(snapshot, null)
+    }
+
+    /**
+     * Sends a snapshot of the members subcollection holding the given number of members.
+     */
+    private fun emitMembers(count: Int) {
+        val documents = List(count) { i ->
+            mockk<QueryDocumentSnapshot>().also {
+                every { it.data } returns mapOf(
+                    Constants.FirestoreFields.TeamMember.ROLE to if (i == 0) "ADMIN" else "MEMBER"
+                )
+            }
+        }
+        val snapshot = mockk<QuerySnapshot>()
+        every { snapshot.documents } returns documents
+        every { snapshot.isEmpty } returns documents.isEmpty()
+        membersListener!!.onEvent(snapshot, null)
+    }
+
+    private fun added(id: String, status: TaskStatus, legacy: Boolean): DocumentChange =
+        change(DocumentChange.Type.ADDED, taskDocument(id, status, legacy))
+
+    private fun modified(id: String, status: TaskStatus, legacyIds: Set<String>): DocumentChange =
+        change(DocumentChange.Type.MODIFIED, taskDocument(id, status, legacy = id in legacyIds))
+
+    private fun removed(id: String): DocumentChange =
+        change(DocumentChange.Type.REMOVED, taskDocument(id, TaskStatus.TODO, legacy = true))
+
+    private fun change(type: DocumentChange.Type, document: QueryDocumentSnapshot): DocumentChange =
+        mockk<DocumentChange>().also {
+            every { it.type } returns type
+            every { it.document } returns document
+        }
+
+    /**
+     * Fakes a task document; legacy tasks lack the assigned members field and expose the
+     * assigned members subcollection, whose listener is never fed.
+     */
+    private fun taskDocument(id: String, status: TaskStatus, legacy: Boolean): QueryDocumentSnapshot {
+        val data = buildMap<String, Any> {
+            put(Constants.FirestoreFields.Task.NAME, "Task $id")
+            put(Constants.FirestoreFields.Task.STATUS, status.name)
+            put(Constants.FirestoreFields.Task.CREATION_DATE, Timestamp(id.removePrefix("task").toLong(), 0))
+            if (!legacy) put(Constants.FirestoreFields.Task.ASSIGNED_MEMBERS, emptyList<DocumentReference>())
+        }
+        val assignedMembers = mockk<CollectionReference>()
+        every { assignedMembers.addSnapshotListener(any<EventListener<QuerySnapshot>>()) } answers { FakeRegistration() }
+        val reference = mockk<DocumentReference>()
+        every { reference.collection(Constants.FirestoreCollections.TASK_ASSIGNED_MEMBERS) } returns assignedMembers
+
+        return mockk<QueryDocumentSnapshot>().also {
+            every { it.id } returns id
+            every { it.data } returns data
+            every { it.reference } returns reference
+            every { it.contains(Constants.FirestoreFields.Task.ASSIGNED_MEMBERS) } returns !legacy
+        }
+    }
+
+    companion object {
+        private const val TEAM_ID = "team1"
+        private const val INITIAL_TASKS = 20
+        private const val UPDATES = 50
+    }
+}
@@ -0,0 +1,143 @@
+package it.polito.thesisapp.utils
+
+import it.polito.thesisapp.Benchmarks
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.text.Collator
+import java.util.Locale
+import kotlin.random.Random
+
+/**
+ * Unit tests and benchmark for [NameCollation].
+ * The benchmark only runs on request, see [Benchmarks].
+ */
+class NameCollationTest {
+
+    private val collation = NameCollation(Locale.ITALIAN)
+
+    @Test
+    fun accentedAndLowercaseNames_sortNextToTheirBaseLetter() {
+        val names = listOf("Zoe", "Èlia", "Elena", "andrea", "Bruno", "élio", "Ugo", "ùrsula")
+
+        assertEquals(
+            listOf("andrea", "Bruno", "Elena", "Èlia", "élio", "Ugo", "ùrsula", "Zoe"),
+            collation.sort(names, { it })
+        )
+    }
+
+    @Test
+    fun profiles_areOrderedByFirstThenLastName() {
+        val profiles = listOf("Luca" to "Verdi", "luca" to "Bianchi", "Àlba" to "Rossi")
+
+        assertEquals(
+            listOf("Àlba" to "Rossi", "luca" to "Bianchi", "Luca" to "Verdi"),
+            collation.sort(profiles, { it.first }, { it.second })
+        )
+    }
+
+    @Test
+    fun keyOf_isComputedOncePerName() {
+        assertSame(collation.keyOf("Niccolò"), collation.keyOf("Niccolò"))
+    }
+
+    @Test
+    fun sort_computesOneKeyPerDistinctName() {
+        val names = benchmarkNames()
+        val sortCollation = NameCollation(Locale.ITALIAN, maxSize = NAMES)
+
+        val sorted = sortCollation.sort(names + names.take(NAMES / 2), { it })
+        assertEquals(NAMES.toLong(), sortCollation.keysCreated)
+
+        // Sorting the same names again only reads the cached keys
+        assertEquals(sorted.distinct(), sortCollation.sort(names, { it }))
+        assertEquals(NAMES.toLong(), sortCollation.keysCreated)
+    }
+
+    @Test
+    fun sort_recomputesOnlyTheKeysOfChangedNames() {
+        val names = benchmarkNames()
+        val sortCollation = NameCollation(Locale.ITALIAN, maxSize = NAMES)
+        sortCollation.sort(names, { it })
+
+        val edited = names.mapIndexed { i, name -> if (i % 100 == 0) "$name edited" else name }
+        sortCollation.sort(edited, { it })
+
+        assertEquals(NAMES.toLong() + NAMES / 100, sortCollation.keysCreated)
+    }
+
+    /**
+     * Compares sorting 50k names with the raw String order used so far, with a Collator
+     * called on every comparison, with the collation keys stored alongside the names and
+     * with [NameCollation.sort] looking the cached keys up once per name.
+     * Each timing is the median of [MEASURED_ROUNDS] rounds.
+     * Skipped unless the benchmarks are requested, see [Benchmarks].
+     */
+    @Test
+    fun benchmark_sorting50kNames() {
+        Benchmarks.assumeEnabled()
+
+        val names = benchmarkNames()
+        val collator = Collator.getInstance(Locale.ITALIAN).apply {
+            decomposition = Collator.CANONICAL_DECOMPOSITION
+        }
+        // Large enough to keep the key of every name, as the cache does for the names on screen
+        val benchmarkCollation = NameCollation(Locale.ITALIAN, maxSize = NAMES)
+
+        // Keys are stored alongside the names before any sort, like the task index does
+        val keyed = names.map { it to benchmarkCollation.keyOf(it) }
+
+        // Warm up all the paths before measuring
+        repeat(WARMUP_ROUNDS) {
+            names.sorted()
+            keyed.sortedBy { it.second }
+            benchmarkCollation.sort(names, { it })
+        }
+
+        val rawMillis = medianMillis { names.sorted() }
+        val collatorMillis = medianMillis { names.sortedWith(collator) }
+        val keyMillis = medianMillis { keyed.sortedBy { it.second } }
+        val sortMillis = medianMillis { benchmarkCollation.sort(names, { it }) }
+        val timings = "raw String $rawMillis ms, Collator per compare $collatorMillis ms, " +
+                "stored collation keys $keyMillis ms, NameCollation.sort $sortMillis ms ($NAMES names)"
+
+        assertEquals(names.sortedWith(collator), keyed.sortedBy { it.second }.map { it.first })
+        assertEquals(names.sortedWith(collator), benchmarkCollation.sort(names, { it }))
+        assertTrue("Stored keys must sort faster than a Collator per compare: $timings", keyMillis < collatorMillis)
+        assertTrue("Stored keys must sort no slower than raw Strings: $timings", keyMillis <= rawMillis * TIMING_TOLERANCE)
+        assertTrue("NameCollation.sort must sort no slower than raw Strings: $timings", sortMillis <= rawMillis * TIMING_TOLERANCE)
+    }
+
+    /**
+     * Builds [NAMES] distinct accented names, the same on every call.
+     */
+    private fun benchmarkNames(): List<String> {
+        val random = Random(11)
+        val syllables = listOf("à", "be", "cì", "Do", "è", "fa", "gù", "Li", "mò", "Ne", "ra", "sè", "to", "Ùl")
+        return List(NAMES) {
+            (1..4).joinToString("") { syllables[random.nextInt(syllables.size)] } + " $it"
+        }
+    }
+
+    /**
+     * Runs a block [MEASURED_ROUNDS] times and returns its median duration.
+     */
+    private fun medianMillis(block: () -> Unit): Double {
+        val durations = List(MEASURED_ROUNDS) {
+            val start = System.nanoTime()
+            block()
+            (System.nanoTime() - start) / 1_000_000.0
+        }
+        return durations.sorted()[MEASURED_ROUNDS / 2]
+    }
+
+    companion object {
+        private const val NAMES = 50_000
+        private const val WARMUP_ROUNDS = 3
+        private const val MEASURED_ROUNDS = 7
+
+        // Slack on the timing comparisons, which vary from round to round with the JIT and the GC
+        private const val TIMING_TOLERANCE = 1.5
+    }
+}
@@ -0,0 +1,153 @@
+package it.polito.thesisapp.viewmodel
+
+import com.google.firebase.firestore.DocumentReference
+import io.mockk.every
+import io.mockk.mockk
+import it.polito.thesisapp.model.Profile
+import it.polito.thesisapp.model.TeamSummary
+import it.polito.thesisapp.repository.LocalMirror
+import it.polito.thesisapp.repository.TaskSearchIndex
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.resetMain
+import kotlinx.coroutines.test.runTest
+import kotlinx.coroutines.test.setMain
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests how [HomeViewModel] turns the profile and the selected page into team summary
+ * queries and task syncs, with a fake [LocalMirror].
+ * The diffing of the subscriptions themselves is covered by [SubscriptionManagerTest].
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class HomeViewModelTest {
+
+    // Team IDs of every team summary query, in the order they were made
+    private val summaryQueries = mutableListOf<List<String>>()
+
+    // Teams whose tasks are currently being synced
+    private val syncedTaskTeams = mutableSetOf<String>()
+
+    // Profile snapshots delivered by the fake mirror
+    private val profiles = MutableSharedFlow<Profile?>(replay = 1)
+
+    // Team references by ID, the same instance for every snapshot like equal Firestore references
+    private val teamRefs = mutableMapOf<String, DocumentReference>()
+
+    // ViewModel under test, observing the fake mirror
+    private lateinit var viewModel: HomeViewModel
+
+    @Before
+    fun setUp() {
+        Dispatchers.setMain(UnconfinedTestDispatcher())
+
+        val localMirror = mockk<LocalMirror>()
+        every { localMirror.observeProfile(USER_ID) } returns profiles
+        every { localMirror.syncTeamSummary(any()) } returns emptyFlow()
+        every { localMirror.observeTasks(any(), any()) } returns emptyFlow()
+        every { localMirror.observeTeamSummaries(any()) } answers {
+            val teamIds = firstArg<List<String>>()
+            summaryQueries.add(teamIds)
+            flowOf(teamIds.map { TeamSummary(id = it, name = "Team $it") })
+        }
+        every { localMirror.syncTeamTasks(any()) } answers {
+            val teamId = firstArg<String>()
+            flow {
+                syncedTaskTeams.add(teamId)
+                try {
+                    emit(Unit)
+                    awaitCancellation()
+                } finally {
+                    syncedTaskTeams.remove(teamId)
+                }
+            }
+        }
+
+        viewModel = HomeViewModel(localMirror, TaskSearchIndex())
+    }
+
+    @After
+    fun tearDown() {
+        Dispatchers.resetMain()
+    }
+
+    @Test
+    fun profileEdits_querySummariesOfTheProfileTeams_onlyWhenTheTeamsChange() = runTest {
+        viewModel.loadProfile(USER_ID)
+
+        profiles.emit(profile("First", listOf("team1", "team2")))
+        advanceUntilIdle()
+        profiles.emit(profile("Renamed", listOf("team1", "team2")))
+        advanceUntilIdle()
+        profiles.emit(profile("Renamed", listOf("team2", "team3")))
+        advanceUntilIdle()
+
+        assertEquals(listOf(listOf("team1", "team2"), listOf("team2", "team3")), summaryQueries)
+        assertEquals(listOf("team2", "team3"), viewModel.teams.value.map { it.id })
+        assertEquals("Renamed", viewModel.profile.value?.firstName)
+    }
+
+    @Test
+    fun selectTeam_movesThePrefetchWindow() = runTest {
+        val teamIds = (0 until 6).map { "team$it" }
+        viewModel.loadProfile(USER_ID)
+        profiles.emit(profile("First", teamIds))
+        advanceUntilIdle()
+
+        // The first page and its neighbour
+        assertEquals(setOf("team0", "team1"), syncedTaskTeams)
+
+        // Team 1 was prefetched, team 0 stays within the keep margin
+        viewModel.selectTeam(1)
+        advanceUntilIdle()
+        assertEquals(setOf("team0", "team1", "team2"), syncedTaskTeams)
+
+        // Team 3 was not prefetched, team 0 moves beyond the keep margin
+        viewModel.selectTeam(3)
+        advanceUntilIdle()
+        assertEquals(setOf("team1", "team2", "team3", "team4"), syncedTaskTeams)
+
+        assertEquals(1L, viewModel.prefetchStats.hitCount)
+        assertEquals(1L, viewModel.prefetchStats.missCount)
+    }
+
+    @Test
+    fun selectTeam_outOfRange_keepsTheSelection() = runTest {
+        viewModel.loadProfile(USER_ID)
+        profiles.emit(profile("First", listOf("team0", "team1")))
+        advanceUntilIdle()
+
+        viewModel.selectTeam(1)
+        viewModel.selectTeam(2)
+        advanceUntilIdle()
+
+        assertEquals(1, viewModel.selectedTeamIndex.value)
+        assertEquals(setOf("team0", "team1"), syncedTaskTeams)
+    }
+
+    /**
+     * Creates a snapshot of the profile of the user, member of the given teams.
+     */
+    private fun profile(firstName: String, teamIds: List<String>) = Profile(
+        id = USER_ID,
+        firstName = firstName,
+        lastName = "Last",
+        teams = teamIds.map { teamId ->
+            teamRefs.getOrPut(teamId) { mockk<DocumentReference>().also { every { it.id } returns teamId } }
+        }
+    )
+
+    companion object {
+        private const val USER_ID = "user1"
+    }
+}
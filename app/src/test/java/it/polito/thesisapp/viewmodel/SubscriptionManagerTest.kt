@@ -0,0 +1,85 @@
+package it.polito.thesisapp.viewmodel
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.cancel
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Unit tests for [SubscriptionManager].
+ */
+class SubscriptionManagerTest {
+
+    // Number of collectors currently running, by team ID
+    private val collectors = mutableMapOf<String, Int>()
+
+    // Number of collectors started so far, by team ID
+    private val starts = mutableMapOf<String, Int>()
+
+    private lateinit var scope: CoroutineScope
+    private lateinit var manager: SubscriptionManager<String>
+
+    @Before
+    fun setUp() {
+        collectors.clear()
+        starts.clear()
+        scope = CoroutineScope(SupervisorJob() + Dispatchers.Unconfined)
+        manager = SubscriptionManager(scope) { teamId ->
+            synchronized(collectors) {
+                collectors.merge(teamId, 1, Int::plus)
+                starts.merge(teamId, 1, Int::plus)
+            }
+            try {
+                awaitCancellation()
+            } finally {
+                synchronized(collectors) { collectors.merge(teamId, -1, Int::plus) }
+            }
+        }
+    }
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+    }
+
+    @Test
+    fun tenProfileEdits_leaveExactlyOneCollectorPerTeam() {
+        val teamIds = listOf("team1", "team2", "team3")
+
+        // Every edit of the profile document emits the same teams again
+        repeat(10) { manager.update(teamIds) }
+
+        teamIds.forEach { teamId ->
+            assertEquals(1, collectors[teamId])
+            assertEquals(1, starts[teamId])
+        }
+        assertEquals(teamIds.toSet(), manager.activeKeys)
+    }
+
+    @Test
+    fun update_startsOnlyAddedTeamsAndCancelsOnlyRemovedOnes() {
+        manager.update(listOf("team1", "team2"))
+        manager.update(listOf("team2", "team3"))
+
+        assertEquals(0, collectors["team1"])
+        assertEquals(1, collectors["team2"])
+        assertEquals(1, collectors["team3"])
+        assertEquals(1, starts["team2"])
+        assertEquals(setOf("team2", "team3"), manager.activeKeys)
+    }
+
+    @Test
+    fun clear_cancelsEveryCollector() {
+        manager.update(listOf("team1", "team2"))
+
+        manager.clear()
+
+        assertEquals(0, collectors.values.sum())
+        assertEquals(emptySet<String>(), manager.activeKeys)
+    }
+}